@@ -0,0 +1,27 @@
+package codes.blitz.game.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler attached, so every result comes
+ * with its allocation rate. Takes the usual JMH arguments, e.g. a benchmark
+ * name regex or {@code -p map=large}.
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args)
+			throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLine);
+		options.addProfiler(GCProfiler.class);
+		if (commandLine.getIncludes().isEmpty()) {
+			options.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,77 @@
+package codes.blitz.game.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.DecodeException;
+import javax.websocket.EncodeException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codes.blitz.game.Bot;
+import codes.blitz.game.message.MessageDecoder;
+import codes.blitz.game.message.MessageEncoder;
+import codes.blitz.game.message.MessageType;
+import codes.blitz.game.message.bot.BotMessage;
+import codes.blitz.game.message.game.Action;
+import codes.blitz.game.message.game.GameMessage;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+	@Param({ "small", "medium", "large" })
+	public String map;
+
+	@Param({ "few", "many" })
+	public String units;
+
+	private String json;
+	private MessageDecoder decoder;
+	private MessageEncoder encoder;
+	private BotMessage command;
+
+	@Setup
+	public void setUp() {
+		json = Fixtures.json(map, units);
+		decoder = new MessageDecoder();
+		encoder = new MessageEncoder();
+
+		GameMessage message = Fixtures.message(map, units);
+		List<Action> actions = new Bot().getNextActions(message);
+		command = new BotMessage();
+		command.setType(MessageType.COMMAND);
+		command.setTick(message.getTick());
+		command.setActions(actions);
+	}
+
+	// Same decoder every time, like a connection that keeps receiving the same map
+	@Benchmark
+	public GameMessage decode() throws DecodeException {
+		return decoder.decode(json);
+	}
+
+	// Fresh decoder, so the tiles are parsed every time like on the first tick
+	@Benchmark
+	public GameMessage decodeFirstTick() throws DecodeException {
+		return new MessageDecoder().decode(json);
+	}
+
+	@Benchmark
+	public String encode() throws EncodeException {
+		return encoder.encode(command);
+	}
+}
@@ -0,0 +1,105 @@
+package codes.blitz.game.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import codes.blitz.game.message.GameMessageWriter;
+import codes.blitz.game.message.game.Crew;
+import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.recording.ReplayReader;
+
+/**
+ * Game messages for maps of three sizes, with either a couple of units per
+ * crew or a crowded field, taken from
+ * {@link codes.blitz.game.recording.GameRecorder} logs under
+ * {@code fixtures/<map>.rec}.
+ *
+ * The maps themselves are generated: no game against the real server is
+ * checked in. {@code fixtures/<map>-start.json} is a tick 150 written in the
+ * server's JSON format on a random 15x15, 30x30 or 50x50 map, with walls,
+ * mines, a depot and two crews of two units each. {@link RecordFixtures}
+ * played {@value RecordFixtures#TICKS} ticks of self-play from there with
+ * the {@link codes.blitz.game.simulation.Simulator} and recorded the first
+ * crew. "few" is the first tick of that recording, "many" the last one, by
+ * which the crews have bought more units (up to 40 per crew on the large map).
+ */
+public final class Fixtures {
+	public static final List<String> MAPS = List.of("small", "medium", "large");
+
+	private Fixtures() {
+	}
+
+	// The tick in the server's JSON format, for the codec benchmarks
+	public static String json(String map, String units) {
+		return new GameMessageWriter().write(message(map, units));
+	}
+
+	// The deadline isn't stamped, so the bot gets its full budget on every call
+	public static GameMessage message(String map, String units) {
+		if (!units.equals("few") && !units.equals("many")) {
+			throw new IllegalArgumentException("No fixture with " + units + " units");
+		}
+
+		// Replays are read from a memory mapped file, not from the jar
+		Path file = null;
+		try (InputStream in = resource("/fixtures/" + map + ".rec")) {
+			file = Files.createTempFile("fixture-" + map, ".rec");
+			Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+
+			GameMessage message = null;
+			try (ReplayReader reader = new ReplayReader(file)) {
+				ReplayReader.Entry entry;
+				while ((entry = reader.next()) != null) {
+					if (entry.isTick()) {
+						message = entry.getGameMessage();
+						if (units.equals("few")) {
+							break;
+						}
+					}
+				}
+			}
+			if (message == null) {
+				throw new IllegalStateException("No tick recorded for " + map);
+			}
+			message.setReceivedAtNanos(0);
+			return message;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (file != null) {
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					file.toFile().deleteOnExit();
+				}
+			}
+		}
+	}
+
+	// The tick the recording of `map` started from, see RecordFixtures
+	static String startJson(String map) {
+		try (InputStream in = resource("/fixtures/" + map + "-start.json")) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static Crew myCrew(GameMessage message) {
+		return message.getCrewsMapById().get(message.getCrewId());
+	}
+
+	private static InputStream resource(String name) {
+		InputStream in = Fixtures.class.getResourceAsStream(name);
+		if (in == null) {
+			throw new IllegalArgumentException("No fixture " + name);
+		}
+		return in;
+	}
+}
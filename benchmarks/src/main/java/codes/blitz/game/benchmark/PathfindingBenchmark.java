@@ -0,0 +1,78 @@
+package codes.blitz.game.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.message.game.Position;
+import codes.blitz.game.message.game.Terrain;
+import codes.blitz.game.message.game.Unit;
+import codes.blitz.game.message.game.World;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathfindingBenchmark {
+	@Param({ "small", "medium", "large" })
+	public String map;
+
+	@Param({ "few", "many" })
+	public String units;
+
+	private GameMessage message;
+	private World world;
+	private Unit unit;
+	private Position base;
+	private Position farthest;
+
+	@Setup
+	public void setUp() {
+		message = Fixtures.message(map, units);
+		world = new World(message);
+		List<Unit> myUnits = Fixtures.myCrew(message).getUnits();
+		unit = myUnits.get(0);
+		base = Fixtures.myCrew(message).getHomeBase();
+
+		// the reachable cell farthest from the unit makes for the longest search
+		Terrain terrain = new Terrain(world, unit);
+		farthest = unit.getPosition();
+		for (Position position : world.getAllPositions()) {
+			if (terrain.reachable(position)
+					&& terrain.distanceTo(position) > terrain.distanceTo(farthest)) {
+				farthest = position;
+			}
+		}
+	}
+
+	@Benchmark
+	public int terrainConstruction() {
+		// building the World and the unit's distance field is what a tick pays for each unit
+		return new Terrain(new World(message), unit).distanceTo(base);
+	}
+
+	@Benchmark
+	public List<Position> pathTo() {
+		return world.pathTo(unit.getPosition(), farthest, Collections.emptySet());
+	}
+
+	@Benchmark
+	public List<Position> mineablePositionsFromBase() {
+		return new Terrain(world, unit).getMineablePositions(base);
+	}
+}
@@ -0,0 +1,74 @@
+package codes.blitz.game.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.websocket.DecodeException;
+
+import codes.blitz.game.Bot;
+import codes.blitz.game.message.MessageDecoder;
+import codes.blitz.game.message.MessageType;
+import codes.blitz.game.message.bot.BotMessage;
+import codes.blitz.game.message.game.Action;
+import codes.blitz.game.message.game.Crew;
+import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.recording.GameRecorder;
+import codes.blitz.game.simulation.Simulator;
+
+/**
+ * Records the games {@link Fixtures} are taken from. Every map's starting
+ * tick is played forward with the {@link Simulator}, a {@link Bot} for every
+ * crew, and what the first crew receives and sends is written with a
+ * {@link GameRecorder}, like a bot started with {@code RECORD_FILE} would.
+ *
+ * Takes the directory to write {@code <map>.rec} to, the fixtures folder of
+ * this module's resources by default.
+ */
+public class RecordFixtures {
+	public static final int TICKS = 250;
+
+	public static void main(String[] args) throws IOException, DecodeException {
+		Path directory = Path.of(args.length > 0 ? args[0] : "src/main/resources/fixtures");
+		for (String map : Fixtures.MAPS) {
+			Path file = directory.resolve(map + ".rec");
+			record(Fixtures.startJson(map), file);
+			System.out.println(map + ": " + Files.size(file) + " bytes");
+		}
+	}
+
+	static void record(String startJson, Path file) throws IOException, DecodeException {
+		GameMessage message = new MessageDecoder().decode(startJson);
+		String recordedCrew = message.getCrewId();
+		Simulator simulator = new Simulator();
+		Map<String, Bot> bots = new HashMap<>();
+		for (Crew crew : message.getCrews()) {
+			bots.put(crew.getId(), new Bot());
+		}
+
+		try (GameRecorder recorder = new GameRecorder(file)) {
+			for (int tick = 0; tick < TICKS; tick++) {
+				Map<String, List<Action>> actions = new HashMap<>();
+				for (Crew crew : message.getCrews()) {
+					message.setCrewId(crew.getId());
+					if (crew.getId().equals(recordedCrew)) {
+						recorder.recordTick(message);
+					}
+					actions.put(crew.getId(), bots.get(crew.getId()).getNextActions(message));
+				}
+				message.setCrewId(recordedCrew);
+
+				BotMessage command = new BotMessage();
+				command.setType(MessageType.COMMAND);
+				command.setTick(message.getTick());
+				command.setActions(actions.get(recordedCrew));
+				recorder.recordCommand(command);
+
+				message = simulator.step(message, actions);
+			}
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package codes.blitz.game.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codes.blitz.game.Bot;
+import codes.blitz.game.message.game.Action;
+import codes.blitz.game.message.game.GameMessage;
+
+/**
+ * A whole turn of {@link Bot#getNextActions(GameMessage)}. The same message
+ * is replayed, so this measures a bot whose units stand still from one tick
+ * to the next; {@link #firstTick()} measures a bot that has seen nothing yet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+	@Param({ "small", "medium", "large" })
+	public String map;
+
+	@Param({ "few", "many" })
+	public String units;
+
+	private GameMessage message;
+	private Bot bot;
+
+	@Setup
+	public void setUp() {
+		message = Fixtures.message(map, units);
+		bot = new Bot();
+	}
+
+	@Benchmark
+	public List<Action> nextActions() {
+		return bot.getNextActions(message);
+	}
+
+	@Benchmark
+	public List<Action> firstTick() {
+		return new Bot().getNextActions(message);
+	}
+}
@@ -3,25 +3,67 @@ package codes.blitz.game;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 import java.util.concurrent.CountDownLatch;
 
 import javax.websocket.DeploymentException;
 
 import org.glassfish.tyrus.client.ClientManager;
 
+import codes.blitz.game.message.game.CooperativePathfinder;
+import codes.blitz.game.message.game.World;
+import codes.blitz.game.metrics.TickMetrics;
+import codes.blitz.game.recording.GameRecorder;
+
 public class Application {
 	@SuppressWarnings("resource")
 	public static void main(String[] args) {
 		CountDownLatch latch = new CountDownLatch(1);
 
 		String uri = "ws://127.0.0.1:8765";
+		if (System.getenv("SERVER_URI") != null) {
+			uri = System.getenv("SERVER_URI");
+		}
 		
 		//Pour Alack
 //		uri = "ws://159.203.94.148:8765";
 		
+		// Decide on a separate thread and only answer the latest tick
+		boolean pipelined = Boolean.parseBoolean(System.getenv("PIPELINED"));
+
+		long tickBudget = Bot.DEFAULT_TICK_BUDGET_MILLIS;
+		if (System.getenv("TICK_BUDGET_MS") != null) {
+			tickBudget = Long.parseLong(System.getenv("TICK_BUDGET_MS"));
+		}
+		int parallelism = 1;
+		if (System.getenv("BOT_PARALLELISM") != null) {
+			parallelism = Integer.parseInt(System.getenv("BOT_PARALLELISM"));
+		}
+		// For how many ticks the other crews' announced paths are believed
+		int pathTrust = World.DEFAULT_PATH_TRUST;
+		if (System.getenv("PATH_TRUST") != null) {
+			pathTrust = Integer.parseInt(System.getenv("PATH_TRUST"));
+		}
+		Bot bot = new Bot(CooperativePathfinder.DEFAULT_WINDOW, tickBudget, parallelism, pathTrust);
+
+		// Per-phase latencies, over JMX and as a summary line every interval
+		long metricsInterval = 10;
+		if (System.getenv("METRICS_INTERVAL_S") != null) {
+			metricsInterval = Long.parseLong(System.getenv("METRICS_INTERVAL_S"));
+		}
+		TickMetrics.getInstance().registerMBean();
+		TickMetrics.getInstance().startReporting(metricsInterval);
+
 		ClientManager client = ClientManager.createClient();
 		try {
-			client.connectToServer(new WebsocketClient(latch),
+			// Keep a binary log of the game for post-mortems
+			GameRecorder recorder = null;
+			if (System.getenv("RECORD_FILE") != null) {
+				recorder = new GameRecorder(Path.of(System.getenv("RECORD_FILE")));
+			}
+
+			client.connectToServer(
+					new WebsocketClient(latch, pipelined, bot, recorder),
 					new URI(uri));
 			latch.await();
 		} catch (DeploymentException | URISyntaxException | InterruptedException
@@ -1,27 +1,64 @@
 package codes.blitz.game;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import codes.blitz.game.message.exception.PositionOutOfMapException;
+import codes.blitz.game.logging.AsyncLogger;
 import codes.blitz.game.message.game.*;
+import codes.blitz.game.metrics.Phase;
+import codes.blitz.game.metrics.TickMetrics;
 
 public class Bot {
     private GameMessage gameMessage;
     private Crew myCrew;
 	private GameMap map;
 	private Position base;
-	private Terrain terrain;
-	private Unit unit;
-	private Set<Position> requestedMiningLocations;
+	private World world;
 	private Map<UnitType, Integer> unitTypeCounts;
 	private List<Unit> surplusMiners;
-	private Map<Unit, Unit> cartAssignations;
+	private Map<Unit, List<Unit>> cartRoutes;
 
 
+	public static final long DEFAULT_TICK_BUDGET_MILLIS = 500;
+
+	private final int pathfindingWindow;
+	private final long tickBudgetNanos;
+	private final TerrainEngine terrainEngine;
+	private final MineAssignment mineAssignment = new MineAssignment();
+	private final CartRouter cartRouter = new CartRouter();
+	private final EconomyPlanner economyPlanner = new EconomyPlanner();
+	private final Map<String, Position> previousDestinations = new HashMap<>();
+	private final ForkJoinPool pool;
+	private final TickMetrics metrics = TickMetrics.getInstance();
+	private final AsyncLogger log = AsyncLogger.getInstance();
+
 	public Bot() {
-		// initialize some variables you will need throughout the game here
+		this(CooperativePathfinder.DEFAULT_WINDOW);
+	}
+
+	public Bot(int pathfindingWindow) {
+		this(pathfindingWindow, DEFAULT_TICK_BUDGET_MILLIS);
+	}
+
+	public Bot(int pathfindingWindow, long tickBudgetMillis) {
+		this(pathfindingWindow, tickBudgetMillis, 1);
+	}
+
+	// The budget is counted from the moment the message was received.
+	// With a parallelism above 1, units are evaluated on a pool of that many threads.
+	public Bot(int pathfindingWindow, long tickBudgetMillis, int parallelism) {
+		this(pathfindingWindow, tickBudgetMillis, parallelism, World.DEFAULT_PATH_TRUST);
+	}
+
+	// The other crews' announced paths are believed for `pathTrust` ticks, see World#isPassableAt
+	public Bot(int pathfindingWindow, long tickBudgetMillis, int parallelism, int pathTrust) {
+		this.pathfindingWindow = pathfindingWindow;
+		this.tickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(tickBudgetMillis);
+		this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		this.terrainEngine = new TerrainEngine(pathTrust);
 	}
 
     /*
@@ -31,11 +68,14 @@ public class Bot {
     * it in the next turns.
     */
 	public List<Action> getNextActions(GameMessage gameMessage) {
+		var deadline = deadlineFor(gameMessage);
 		this.gameMessage = gameMessage;
 		this.myCrew = gameMessage.getCrewsMapById().get(gameMessage.getCrewId());
 		this.map = gameMessage.getGameMap();
 		this.base = myCrew.getHomeBase();
-		this.requestedMiningLocations = new HashSet<>();
+		var phaseStart = System.nanoTime();
+		this.world = terrainEngine.update(gameMessage);
+		phaseStart = recordPhase(Phase.TERRAIN, phaseStart);
 
 		this.unitTypeCounts = new HashMap<>();
 		for (var unit: myCrew.getUnits()) {
@@ -46,15 +86,26 @@ public class Bot {
 			}
 		}
 
-		var minerSurplus = unitTypeCounts.getOrDefault(UnitType.MINER, 0) - unitTypeCounts.getOrDefault(UnitType.CART, 0);
+		// Miners the carts can't keep up with carry their blitzium home themselves.
+		// The transport capacity is last tick's on purpose: it depends on the cart
+		// routes, which depend on which miners are surplus. Until the planner has
+		// seen a tick, every cart counts for one miner.
+		var cartCapacity = Math.max(unitTypeCounts.getOrDefault(UnitType.CART, 0), (int) economyPlanner.getTransportCapacity());
+		var minerSurplus = unitTypeCounts.getOrDefault(UnitType.MINER, 0) - cartCapacity;
 		if (minerSurplus <= 0) {
 			minerSurplus = 0;
 		}
 		surplusMiners = myCrew.getUnits().stream().filter(u -> u.getType() == UnitType.MINER).collect(Collectors.toList());
 		Collections.reverse(surplusMiners);
-		surplusMiners = surplusMiners.stream().limit(minerSurplus).collect(Collectors.toList());
+		// a miner too heavy to walk has to stay with the carts
+		var maxMoveCargo = gameMessage.getRules().getMaxMinerMoveCargo();
+		surplusMiners = surplusMiners.stream()
+				.filter(u -> u.getBlitzium() <= maxMoveCargo)
+				.limit(minerSurplus)
+				.collect(Collectors.toList());
 
 		this.assignCarts();
+		economyPlanner.update(world, myCrew, cartRoutes);
 
 		// #x###########
 		// ###o##########
@@ -62,242 +113,353 @@ public class Bot {
 		// ###o######o##
 		// #############
 		// #############
-		Map<Unit, Position> desiredCartDestinations = new HashMap<>();
+		// Start from a plan that is safe to send as is, then refine it unit by
+		// unit, most valuable first, for as long as the tick budget allows
+		Map<String, UnitAction> plan = new TreeMap<>();
+		for (var unit: myCrew.getUnits()) {
+			plan.put(unit.getId(), fallbackAction(unit));
+		}
+
+		var units = myCrew.getUnits().stream()
+				.sorted(Comparator.comparing((Unit u) -> u.getBlitzium() == 0).thenComparing(Unit::getId))
+				.collect(Collectors.toList());
 
-		List<Action> actions = myCrew.getUnits().stream()
-				.sorted(Comparator.comparing(Unit::getId))
-				.map(unit -> {
-					this.unit = unit;
-					terrain = new Terrain(gameMessage, unit);
-
-				    if (unit.getType() == UnitType.MINER) {
-						var minerAction = minerLogic(unit);
-						if (minerAction.getAction() == UnitActionType.MOVE) {
-							desiredCartDestinations.put(unit, minerAction.getTarget());
-							return null;
-						} else {
-							return minerAction;
-						}
-					} else if (unit.getType() == UnitType.CART) {
-				    	var cartAction = cartLogic(unit);
-				    	if (cartAction.getAction() == UnitActionType.MOVE) {
-				    		desiredCartDestinations.put(unit, cartAction.getTarget());
-				    		return null;
-						} else {
-				    		return cartAction;
-						}
-					} else {
-				        return new UnitAction(UnitActionType.NONE, unit.getId(), unit.getPosition());
-					}
-				})
-				.filter(Objects::nonNull)
+		// Units are evaluated independently (in parallel when a pool is configured),
+		// then their decisions are merged in priority order so the result doesn't
+		// depend on which thread finished first
+		var decisions = evaluateUnits(units, deadline);
+
+		// Miners looking for a mine are sent to the slots that minimize their total walk
+		var minersNeedingMine = decisions.stream()
+				.filter(decision -> decision != null && decision.needsMine)
+				.map(decision -> decision.unit)
 				.collect(Collectors.toList());
+		var mineSlots = mineAssignment.assign(world, minersNeedingMine);
+
+		Map<Unit, Position> desiredCartDestinations = new HashMap<>();
+		for (var decision: decisions) {
+			if (decision == null) {
+				continue;
+			}
 
-		var cartActions = coordinateCarts(desiredCartDestinations);
-		actions.addAll(cartActions);
+			var unit = decision.unit;
+			var action = decision.action;
+			var destination = action.getTarget();
+			var mine = mineSlots.get(unit);
+			if (mine != null) {
+				log.debug("Trying to mine at ", mine);
+				action = new UnitAction(UnitActionType.MOVE, unit.getId(), mine);
+				destination = mine;
+			} else if (isStepHome(unit, action)) {
+				// planned towards the base itself, whose distance field every unit shares
+				destination = base;
+			}
 
-		var buyAction = buyLogic();
-		if (buyAction != null) {
-			actions.add(buyAction);
+			if (action.getAction() == UnitActionType.MOVE) {
+				desiredCartDestinations.put(unit, destination);
+				previousDestinations.put(unit.getId(), destination);
+			} else {
+				previousDestinations.remove(unit.getId());
+			}
+			// a move towards the destination is fine until the pathfinder refines it
+			plan.put(unit.getId(), action);
 		}
 
+		phaseStart = recordPhase(Phase.UNIT_LOGIC, phaseStart);
+
+		for (var cartAction: coordinateCarts(desiredCartDestinations, deadline)) {
+			plan.put(cartAction.getUnitId(), cartAction);
+		}
+		phaseStart = recordPhase(Phase.CART_COORDINATION, phaseStart);
+
+		List<Action> actions = new ArrayList<>(plan.values());
+		if (System.nanoTime() < deadline) {
+			var buyAction = buyLogic();
+			if (buyAction != null) {
+				actions.add(buyAction);
+			}
+		}
+		recordPhase(Phase.BUY, phaseStart);
+
 		return actions;
 	}
 
-	public List<UnitAction> coordinateCarts(Map<Unit, Position> cartDestinations) {
-	    Set<Position> restrictedPositions = new HashSet<>();
-	    List<UnitAction> cartMoves = new ArrayList<>();
-
-	    // TODO: sort the carts by priority
-	    for (var entry: cartDestinations.entrySet()) {
-	    	var cart = entry.getKey();
-	    	var destination = entry.getValue();
+	public long getTickBudgetNanos() {
+		return tickBudgetNanos;
+	}
 
-	    	var path = terrain.pathTo(cart.getPosition(), destination, restrictedPositions);
-	    	if (path != null) {
-	    		var action = new UnitAction(UnitActionType.MOVE, cart.getId(), path.get(1));
-	    		cartMoves.add(action);
+	// Return when the next phase starts
+	private long recordPhase(Phase phase, long start) {
+		var end = System.nanoTime();
+		metrics.record(phase, end - start);
+		return end;
+	}
 
-	    		path.stream().limit(3).forEach(restrictedPositions::add);
-			}
+	// Decisions come back in the same order as the units, `null` for units the deadline cut off
+	private List<UnitDecision> evaluateUnits(List<Unit> units, long deadline) {
+		if (pool == null) {
+			return units.stream()
+					.map(unit -> evaluateUnit(unit, deadline))
+					.collect(Collectors.toList());
 		}
 
-		return cartMoves;
+		return pool.submit(() -> units.parallelStream()
+				.map(unit -> evaluateUnit(unit, deadline))
+				.collect(Collectors.toList()))
+				.join();
 	}
 
-	public Action buyLogic() {
-		var remainingTicks = gameMessage.getTotalTick() - gameMessage.getTick();
-	    if (remainingTicks < 200) {
-	    	return null;
+	private UnitDecision evaluateUnit(Unit unit, long deadline) {
+		if (System.nanoTime() >= deadline) {
+			return null;
 		}
 
-		var numCarts = myCrew.getUnits().stream().filter(unit -> unit.getType() == UnitType.CART).count();
-		var numMiners = myCrew.getUnits().stream().filter(unit -> unit.getType() == UnitType.MINER).count();
+		var terrain = new Terrain(world, unit);
+		if (unit.getType() == UnitType.MINER) {
+			return minerLogic(unit, terrain);
+		} else if (unit.getType() == UnitType.CART) {
+			return new UnitDecision(unit, cartLogic(unit, terrain));
+		} else {
+			return new UnitDecision(unit, generateNoneAction(unit));
+		}
+	}
 
-	    var MAX_MINERS = Math.min(6, terrain.getMineablePositions(base).size() + numMiners);
-	    var MAX_CARTS = 6;
+	private long deadlineFor(GameMessage gameMessage) {
+		var receivedAt = gameMessage.getReceivedAtNanos() != 0 ? gameMessage.getReceivedAtNanos() : System.nanoTime();
+		return receivedAt + tickBudgetNanos;
+	}
+
+	// Keep heading to last tick's destination, the server paths there on its own
+	private UnitAction fallbackAction(Unit unit) {
+		var destination = previousDestinations.get(unit.getId());
+		if (destination == null || destination.equals(unit.getPosition())) {
+			return new UnitAction(UnitActionType.NONE, unit.getId(), unit.getPosition());
+		}
+		return new UnitAction(UnitActionType.MOVE, unit.getId(), destination);
+	}
 
+	public List<UnitAction> coordinateCarts(Map<Unit, Position> cartDestinations) {
+		return coordinateCarts(cartDestinations, Long.MAX_VALUE);
+	}
 
-		var cartCost = myCrew.getPrices().getCartPrice();
-		var minerCost = myCrew.getPrices().getMinerPrice();
+	// Units that don't get planned before the deadline are left out
+	public List<UnitAction> coordinateCarts(Map<Unit, Position> cartDestinations, long deadline) {
+	    var pathfinder = new CooperativePathfinder(world, pathfindingWindow);
+	    List<UnitAction> cartMoves = new ArrayList<>();
 
-		if (numCarts < MAX_CARTS && surplusMiners.size() > 0 && cartCost <= myCrew.getBlitzium()) {
-			return new BuyAction(UnitType.CART);
+	    // our other units mine, drop or wait where they stand
+	    for (var unit: myCrew.getUnits()) {
+	    	if (cartDestinations.containsKey(unit)) {
+	    		pathfinder.expect(unit.getPosition());
+			} else {
+	    		pathfinder.hold(unit.getPosition());
+			}
 		}
 
-		if (numMiners < MAX_MINERS && minerCost <= myCrew.getBlitzium()) {
-			return new BuyAction(UnitType.MINER);
+	    // loaded units go first since they are the ones bringing points home,
+	    // then the ones closest to their destination as they have the fewest detours left
+	    var units = new ArrayList<>(cartDestinations.keySet());
+	    units.sort(Comparator.comparing((Unit u) -> u.getBlitzium() == 0)
+				.thenComparingInt(u -> world.distanceFieldFrom(cartDestinations.get(u)).distanceTo(u.getPosition()))
+				.thenComparing(Unit::getId));
+
+	    for (var cart: units) {
+	    	if (System.nanoTime() >= deadline) {
+	    		break;
+			}
+
+	    	var path = pathfinder.plan(cart.getPosition(), cartDestinations.get(cart));
+	    	if (path != null && path.size() > 1 && !path.get(1).equals(cart.getPosition())) {
+	    		cartMoves.add(new UnitAction(UnitActionType.MOVE, cart.getId(), path.get(1)));
+			} else {
+	    		cartMoves.add(new UnitAction(UnitActionType.NONE, cart.getId(), cart.getPosition()));
+			}
 		}
-		return null;
+
+		return cartMoves;
 	}
 
-	public void assignCarts() {
-		cartAssignations = new HashMap<>();
+	// Buy whatever adds the most to the bottleneck between mining and carrying, see EconomyPlanner
+	public Action buyLogic() {
+		var unitType = economyPlanner.nextPurchase(world, myCrew);
+		return unitType == null ? null : new BuyAction(unitType);
+	}
 
+	// Carts collect from the miners that don't carry their blitzium home themselves
+	public void assignCarts() {
+		var carts = myCrew.getUnits().stream().filter(u -> u.getType() == UnitType.CART).collect(Collectors.toList());
 		var miners = myCrew.getUnits()
 				.stream()
-				.filter(u -> u.getType() == UnitType.MINER)
+				.filter(u -> u.getType() == UnitType.MINER && !surplusMiners.contains(u))
 				.collect(Collectors.toList());
 
-		if (miners.isEmpty()) {
-			return;
-		}
-
-		var carts = myCrew.getUnits().stream().filter(u -> u.getType() == UnitType.CART).collect(Collectors.toList());
-		for (int i = 0; i < carts.size(); i++) {
-			var cart = carts.get(i);
-			var miner = miners.get(i % miners.size());
-			cartAssignations.put(cart, miner);
-		}
+		cartRoutes = cartRouter.plan(world, carts, miners, base);
 	}
 
 
-	public UnitAction cartLogic(Unit unit) {
-		// if we have blitzium
-	    if (unit.getBlitzium() > 24) {
+	public UnitAction cartLogic(Unit unit, Terrain terrain) {
+		var route = cartRoutes.getOrDefault(unit, List.of());
+		var blocked = !route.isEmpty() && !terrain.reachable(route.get(0).getPosition())
+				&& !terrain.isNeighboring(route.get(0).getPosition());
+
+		// if we are full, or have blitzium and nobody we can get to on the way
+	    if (unit.getBlitzium() >= gameMessage.getRules().getMaxCartCargo() || ((route.isEmpty() || blocked) && unit.getBlitzium() > 0)) {
 	        // and are next to a base
-			if (terrain.neighbors(unit.getPosition()).contains(base)) {
+			if (terrain.isNeighboring(base)) {
 				// drop
 				return new UnitAction(UnitActionType.DROP, unit.getId(), base);
 			} else {
-			    return generateMoveAction(unit, base);
+			    return generateMoveHomeAction(unit, terrain);
 			}
 		}
 
-
-		var miners = myCrew.getUnits().stream()
-				.filter(u -> u.getType() == UnitType.MINER)
-				.collect(Collectors.toList());
-
-		if (miners.isEmpty()) {
-			return new UnitAction(UnitActionType.NONE, unit.getId(), unit.getPosition());
-		}
-
-		if (miners.size() == 1) {
-			return generateMoveAction(unit, miners.get(0).getPosition());
-		}
-
-		var theChosenOne = cartAssignations.get(unit);
-		if (theChosenOne == null) {
-			return generateNoneAction();
+		if (route.isEmpty()) {
+			// wait by the closest miner until it has something for us
+			var closestMiner = myCrew.getUnits().stream()
+					.filter(u -> u.getType() == UnitType.MINER && !surplusMiners.contains(u))
+					.filter(u -> terrain.reachable(u.getPosition()))
+					.min(Comparator.comparingInt((Unit u) -> terrain.distanceTo(u.getPosition())).thenComparing(Unit::getId));
+			if (closestMiner.isEmpty() || terrain.isNeighboring(closestMiner.get().getPosition())) {
+				return generateNoneAction(unit);
+			}
+			return generateMoveAction(unit, closestMiner.get().getPosition(), terrain);
 		}
 
-		var chosenPosition = theChosenOne.getPosition();
-		if (!terrain.reachable(chosenPosition) || terrain.isNeighboring(chosenPosition)) {
-			return generateNoneAction();
+		// the miner drops its blitzium on us once we are next to it
+		var nextStop = route.get(0).getPosition();
+		if (!terrain.reachable(nextStop) || terrain.isNeighboring(nextStop)) {
+			return generateNoneAction(unit);
 		}
-		return generateMoveAction(unit, chosenPosition);
+		return generateMoveAction(unit, nextStop, terrain);
 	}
 
-	private UnitAction generateNoneAction() {
+	private UnitAction generateNoneAction(Unit unit) {
 		return new UnitAction(UnitActionType.NONE, unit.getId(), unit.getPosition());
 	}
 
 
-	public UnitAction minerLogic(Unit unit) {
+	public UnitDecision minerLogic(Unit unit, Terrain terrain) {
 		var isSurplusMiner = surplusMiners.contains(unit);
 
-		var unitPosition = unit.getPosition();
-		var adjacentPositions = terrain.neighbors(unitPosition);
+		var grid = map.getTileGrid();
+		var unitCell = grid.indexOf(unit.getPosition());
 
 		if (isSurplusMiner && unit.getBlitzium() > 4) {
 			// if we are adjacent to a base, and have blitzium:
 			if (terrain.isNeighboring(base)) {
-				return new UnitAction(UnitActionType.DROP, unit.getId(), base);
+				return new UnitDecision(unit, new UnitAction(UnitActionType.DROP, unit.getId(), base));
 
 			}
 
 			// else, move towards a depot
-			return generateMoveAction(unit, base);
+			return new UnitDecision(unit, generateMoveHomeAction(unit, terrain));
 		}
 
 
 
-		// if we have at least 25 blitzium and are by our assigned cart, drop the blitzium to that cart
-        Unit assignedCart = null;
-		for (var entry: cartAssignations.entrySet()) {
-			if (entry.getValue().equals(unit)) {
-				assignedCart = entry.getKey();
+		// if a cart came for our blitzium and we have what it came for, drop the blitzium to that cart,
+		// or to any idle cart next to us once we have enough
+		for (var entry: cartRoutes.entrySet()) {
+			var cart = entry.getKey();
+			var route = entry.getValue();
+			var room = gameMessage.getRules().getMaxCartCargo() - cart.getBlitzium();
+			if (room <= 0 || !terrain.isNeighboring(cart.getPosition())) {
+				continue;
+			}
+			var cameForUs = !route.isEmpty() && route.get(0).equals(unit)
+					&& unit.getBlitzium() >= Math.min(cartRouter.plannedPickup(unit), room);
+			var idle = route.isEmpty() && unit.getBlitzium() >= Math.min(cartRouter.getMinPickup(), room);
+			if (cameForUs || idle) {
+				return new UnitDecision(unit, new UnitAction(UnitActionType.DROP, unit.getId(), cart.getPosition()));
 			}
-		}
-		if (assignedCart != null && unit.getBlitzium() >= 25 && terrain.isNeighboring(assignedCart.getPosition())) {
-			return new UnitAction(UnitActionType.DROP, unit.getId(), assignedCart.getPosition());
 		}
 
 
 		// else, check if we are by a mine with < 25 blitzium; mine
         if (unit.getBlitzium() < 50) {
-			for (var pos: adjacentPositions) {
-				if (positionHasType(pos, TileType.MINE)) {
-					requestedMiningLocations.add(pos);
-					return new UnitAction(UnitActionType.MINE, unit.getId(), pos);
+			for (int i = grid.adjacencyStart(unitCell); i < grid.adjacencyEnd(unitCell); i++) {
+				var cell = grid.adjacentCell(i);
+				if (grid.hasType(cell, TileType.MINE)) {
+					return new UnitDecision(unit, new UnitAction(UnitActionType.MINE, unit.getId(), grid.positionAt(cell)));
 				}
 			}
 		}
 
-		var mines = terrain.getMineablePositions().stream().filter(m -> !requestedMiningLocations.contains(m)).collect(Collectors.toList());
-
-        if (!mines.isEmpty() && !canMine(unit.getPosition()) && unit.getBlitzium() < 25) {
-        	var mine = mines.stream().findFirst().orElseThrow();
-			requestedMiningLocations.add(mine);
-			System.out.println("Trying to mine at " + mine.toString());
-			return generateMoveAction(unit, mine);
+		// the mine to head for is picked when decisions are merged, so that two miners don't pick the same one
+        if (!canMine(unit.getPosition()) && unit.getBlitzium() < 25) {
+        	return new UnitDecision(unit, generateNoneAction(unit), true);
 		} else {
-        	return new UnitAction(UnitActionType.NONE, unit.getId(), unit.getPosition());
+        	return new UnitDecision(unit, generateNoneAction(unit));
 		}
 	}
 
-	public UnitAction generateMoveAction(Unit u, Position p) {
+	public UnitAction generateMoveAction(Unit u, Position p, Terrain terrain) {
 	    if (u.getPosition().equals(p)) {
 	    	return new UnitAction(UnitActionType.NONE, u.getId(), u.getPosition());
 		}
 
 	    if (terrain.pathTo(p) == null) {
-	    	return generateNoneAction();
+	    	return generateNoneAction(u);
 		}
 
 		return new UnitAction(UnitActionType.MOVE, u.getId(), p);
 	}
 
-	public boolean positionHasType(Position p, TileType t) {
-		try {
-			return map.getTileTypeAt(p) == t;
-		} catch (PositionOutOfMapException e) {
-			return false;
+	// One step towards the base, read from the shared home field instead of searching from the unit
+	public UnitAction generateMoveHomeAction(Unit u, Terrain terrain) {
+		var nextStep = terrain.nextStepToBase();
+		if (nextStep == null) {
+			return generateNoneAction(u);
 		}
+
+		return new UnitAction(UnitActionType.MOVE, u.getId(), nextStep);
+	}
+
+	// Other moves head for a miner or a mine slot, never for a unit's next step home
+	private boolean isStepHome(Unit u, UnitAction action) {
+		return action.getAction() == UnitActionType.MOVE
+				&& action.getTarget().equals(world.nextStepToBase(u.getPosition()));
+	}
+
+	public boolean positionHasType(Position p, TileType t) {
+		return map.getTileGrid().hasType(p, t);
 	}
 
 
 	public boolean canMine(Position p) {
-		var adjacentPositions = terrain.neighbors(p);
-		for (var adjP: adjacentPositions) {
-			try {
-				if (map.getTileTypeAt(adjP) == TileType.MINE) {
-					return true;
-				}
+		var cell = map.getTileGrid().indexOf(p);
+		return cell >= 0 && map.getTileGrid().isNextToType(cell, TileType.MINE);
+	}
+
+	/*
+	 * What a unit wants to do this tick. Miners that still need a mine slot
+	 * get one when decisions are merged.
+	 */
+	public static class UnitDecision {
+		private final Unit unit;
+		private final UnitAction action;
+		private final boolean needsMine;
+
+		UnitDecision(Unit unit, UnitAction action) {
+			this(unit, action, false);
+		}
+
+		UnitDecision(Unit unit, UnitAction action, boolean needsMine) {
+			this.unit = unit;
+			this.action = action;
+			this.needsMine = needsMine;
+		}
+
+		public Unit getUnit() {
+			return unit;
+		}
+
+		public UnitAction getAction() {
+			return action;
+		}
 
-			} catch (PositionOutOfMapException e) {}
+		public boolean needsMine() {
+			return needsMine;
 		}
-		return false;
 	}
-}
\ No newline at end of file
+}
@@ -3,6 +3,11 @@ package codes.blitz.game;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.websocket.ClientEndpoint;
 import javax.websocket.CloseReason;
@@ -12,20 +17,68 @@ import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 
+import codes.blitz.game.logging.AsyncLogger;
 import codes.blitz.game.message.MessageDecoder;
 import codes.blitz.game.message.MessageEncoder;
 import codes.blitz.game.message.MessageType;
 import codes.blitz.game.message.bot.BotMessage;
 import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.metrics.Phase;
+import codes.blitz.game.metrics.TickMetrics;
+import codes.blitz.game.recording.GameRecorder;
 
 @ClientEndpoint(decoders = MessageDecoder.class, encoders = MessageEncoder.class)
 public class WebsocketClient {
 	private Bot bot;
 	private CountDownLatch latch;
 
+	// Pipelined mode: ticks are handed to a decision thread so the I/O
+	// thread can keep reading frames, and only the latest tick is answered.
+	private final boolean pipelined;
+	private final ExecutorService decisionThread;
+	private final AtomicReference<GameMessage> pendingTick = new AtomicReference<>();
+	private volatile int latestTick = Integer.MIN_VALUE;
+
+	// Every tick received and command sent, when recording is on. In
+	// pipelined mode the writes happen on a thread of their own, in order,
+	// so that neither the I/O thread nor the decision thread waits on them.
+	private final GameRecorder recorder;
+	private final ExecutorService recordingThread;
+
+	// Commands are encoded here rather than by the container, to time both steps
+	private final MessageEncoder encoder = new MessageEncoder();
+	private final TickMetrics metrics = TickMetrics.getInstance();
+	private final AsyncLogger log = AsyncLogger.getInstance();
+
 	public WebsocketClient(CountDownLatch latch) {
+		this(latch, false);
+	}
+
+	public WebsocketClient(CountDownLatch latch, boolean pipelined) {
+		this(latch, pipelined, new Bot());
+	}
+
+	public WebsocketClient(CountDownLatch latch, boolean pipelined, Bot bot) {
+		this(latch, pipelined, bot, null);
+	}
+
+	public WebsocketClient(CountDownLatch latch, boolean pipelined, Bot bot,
+			GameRecorder recorder) {
 		this.latch = latch;
-		this.bot = new Bot();
+		this.bot = bot;
+		this.pipelined = pipelined;
+		this.recorder = recorder;
+		this.decisionThread = pipelined ? daemonThread("bot-decision") : null;
+		this.recordingThread = pipelined && recorder != null
+				? daemonThread("bot-recording") : null;
+	}
+
+	private static ExecutorService daemonThread(String name) {
+		return Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 
 	@OnOpen
@@ -45,25 +98,157 @@ public class WebsocketClient {
 	@OnMessage
 	public void processMessageFromServer(GameMessage receivedMessage,
 			Session session) throws IOException, EncodeException {
-		System.out.println("\nTurn " + receivedMessage.getTick());
+		record(receivedMessage);
+		if (pipelined) {
+			latestTick = receivedMessage.getTick();
+			// A tick still waiting for the decision thread is replaced, not queued
+			if (pendingTick.getAndSet(receivedMessage) == null) {
+				decisionThread.execute(() -> decidePendingTicks(session));
+			}
+			return;
+		}
+
+		BotMessage botMessage = buildCommand(receivedMessage);
+		String frame = encode(botMessage);
+		long sendStart = System.nanoTime();
+		session.getBasicRemote().sendText(frame);
+		tickSent(receivedMessage, sendStart);
+		record(botMessage);
+	}
+
+	private void decidePendingTicks(Session session) {
+		GameMessage message;
+		while ((message = pendingTick.getAndSet(null)) != null) {
+			BotMessage botMessage;
+			String frame;
+			try {
+				botMessage = buildCommand(message);
+				frame = encode(botMessage);
+			} catch (RuntimeException | EncodeException e) {
+				log.error("Could not decide turn " + message.getTick() + ": ", e);
+				continue;
+			}
+
+			// Don't answer a tick the server has already moved past
+			if (message.getTick() < latestTick) {
+				log.info("Dropping stale turn ", message.getTick());
+				continue;
+			}
+
+			GameMessage sentMessage = message;
+			record(botMessage);
+			long sendStart = System.nanoTime();
+			try {
+				session.getAsyncRemote().sendText(frame, result -> {
+					if (!result.isOK()) {
+						log.warn("Could not send turn " + sentMessage.getTick() + ": ",
+								result.getException());
+						return;
+					}
+					tickSent(sentMessage, sendStart);
+				});
+			} catch (RuntimeException e) {
+				// e.g. the session closed while the turn was being decided
+				log.warn("Could not send turn " + sentMessage.getTick() + ": ", e);
+			}
+		}
+	}
+
+	private BotMessage buildCommand(GameMessage receivedMessage) {
+		if (receivedMessage.getDecodedAtNanos() != 0) {
+			metrics.record(Phase.RECEIVE,
+					System.nanoTime() - receivedMessage.getDecodedAtNanos());
+		}
+		log.info("Turn ", receivedMessage.getTick());
 
 		List<String> errors = receivedMessage.getCrewsMapById()
 				.get(receivedMessage.getCrewId()).getErrors();
-		errors.forEach(System.out::println);
+		errors.forEach(log::warn);
 
 		// Send back a move
 		BotMessage botMessage = new BotMessage();
 		botMessage.setType(MessageType.COMMAND);
 		botMessage.setTick(receivedMessage.getTick());
 		botMessage.setActions(bot.getNextActions(receivedMessage));
+		return botMessage;
+	}
+
+	private String encode(BotMessage botMessage) throws EncodeException {
+		long start = System.nanoTime();
+		String frame = encoder.encode(botMessage);
+		metrics.record(Phase.ENCODE, System.nanoTime() - start);
+		return frame;
+	}
+
+	private void tickSent(GameMessage message, long sendStart) {
+		long now = System.nanoTime();
+		metrics.record(Phase.SEND, now - sendStart);
+		if (message.getReceivedAtNanos() != 0) {
+			long tickNanos = now - message.getReceivedAtNanos();
+			metrics.tickCompleted(tickNanos, tickNanos > bot.getTickBudgetNanos());
+		}
+	}
+
+	private void record(GameMessage message) {
+		if (recorder != null) {
+			onRecordingThread(() -> {
+				try {
+					recorder.recordTick(message);
+				} catch (IOException e) {
+					log.warn("Could not record turn " + message.getTick() + ": ", e);
+				}
+			});
+		}
+	}
 
-		session.getBasicRemote().sendObject(botMessage);
+	private void record(BotMessage message) {
+		if (recorder != null) {
+			onRecordingThread(() -> {
+				try {
+					recorder.recordCommand(message);
+				} catch (IOException e) {
+					log.warn("Could not record command " + message.getTick() + ": ", e);
+				}
+			});
+		}
+	}
 
+	private void onRecordingThread(Runnable write) {
+		if (recordingThread != null) {
+			try {
+				recordingThread.execute(write);
+			} catch (RejectedExecutionException e) {
+				// a decision finishing after the game ended, the recording is closed
+			}
+		} else {
+			write.run();
+		}
 	}
 
 	@SuppressWarnings("unused")
 	@OnClose
 	public void onClose(Session session, CloseReason closeReason) {
+		if (decisionThread != null) {
+			decisionThread.shutdownNow();
+		}
+		if (recordingThread != null) {
+			// Let the records already handed over reach the file
+			recordingThread.shutdown();
+			try {
+				if (!recordingThread.awaitTermination(5, TimeUnit.SECONDS)) {
+					log.warn("Gave up waiting for the recording to catch up");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (recorder != null) {
+			try {
+				recorder.close();
+			} catch (IOException e) {
+				log.warn("Could not close the recording: ", e);
+			}
+		}
 		latch.countDown();
 	}
-}
\ No newline at end of file
+}
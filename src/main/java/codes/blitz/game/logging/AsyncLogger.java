@@ -0,0 +1,202 @@
+package codes.blitz.game.logging;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging that never makes the caller wait for the console. Events go into a
+ * preallocated ring buffer and a background thread writes them to stdout.
+ * When the buffer is full, events are dropped and the number dropped is
+ * logged once there is room again.
+ *
+ * An event is a message and an optional value, concatenated by the drain
+ * thread, so logging `"Trying to mine at ", position` doesn't build a string
+ * on the caller's thread. Values should not change after being logged.
+ *
+ * The level is read from `LOG_LEVEL` (INFO by default). Events still in the
+ * buffer are written when the JVM shuts down.
+ */
+public class AsyncLogger {
+	private static final int CAPACITY = 1 << 13;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static final AsyncLogger INSTANCE = new AsyncLogger(levelFromEnvironment(), System.out);
+
+	private final Level level;
+	private final PrintStream out;
+
+	/*
+	 * Bounded multi-producer queue after Dmitry Vyukov's: a slot is free for
+	 * position p when its sequence is p, and holds the event for p when its
+	 * sequence is p + 1. Only the drain thread reads.
+	 */
+	private final int mask = CAPACITY - 1;
+	private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+	private final Level[] levels = new Level[CAPACITY];
+	private final String[] messages = new String[CAPACITY];
+	private final Object[] values = new Object[CAPACITY];
+	private final AtomicLong tail = new AtomicLong();
+	private long head;
+
+	private final LongAdder dropped = new LongAdder();
+	private long reportedDropped;
+	private final Thread drainThread;
+	private volatile boolean running = true;
+
+	AsyncLogger(Level level, PrintStream out) {
+		this.level = level;
+		this.out = out;
+		for (int i = 0; i < CAPACITY; i++) {
+			sequences.set(i, i);
+		}
+
+		drainThread = new Thread(this::drainLoop, "log-drain");
+		drainThread.setDaemon(true);
+		drainThread.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close, "log-flush"));
+	}
+
+	public static AsyncLogger getInstance() {
+		return INSTANCE;
+	}
+
+	public boolean isEnabled(Level eventLevel) {
+		return eventLevel.compareTo(level) >= 0;
+	}
+
+	public void debug(String message) {
+		log(Level.DEBUG, message, null);
+	}
+
+	public void debug(String message, Object value) {
+		log(Level.DEBUG, message, value);
+	}
+
+	public void info(String message) {
+		log(Level.INFO, message, null);
+	}
+
+	public void info(String message, Object value) {
+		log(Level.INFO, message, value);
+	}
+
+	public void warn(String message) {
+		log(Level.WARN, message, null);
+	}
+
+	public void warn(String message, Object value) {
+		log(Level.WARN, message, value);
+	}
+
+	// A throwable value is written with its stack trace
+	public void error(String message, Object value) {
+		log(Level.ERROR, message, value);
+	}
+
+	public void log(Level eventLevel, String message, Object value) {
+		if (!isEnabled(eventLevel)) {
+			return;
+		}
+
+		long position = tail.get();
+		while (true) {
+			int slot = (int) (position & mask);
+			long difference = sequences.get(slot) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = tail.get();
+			} else if (difference < 0) {
+				// the drain thread hasn't freed this slot yet, the buffer is full
+				dropped.increment();
+				return;
+			} else {
+				position = tail.get();
+			}
+		}
+
+		int slot = (int) (position & mask);
+		levels[slot] = eventLevel;
+		messages[slot] = message;
+		values[slot] = value;
+		sequences.set(slot, position + 1);
+	}
+
+	/**
+	 * Stop the drain thread and write whatever is left in the buffer.
+	 */
+	public void close() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(drainThread);
+		try {
+			drainThread.join(TimeUnit.SECONDS.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drainLoop() {
+		while (running) {
+			if (drain() == 0) {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+			}
+		}
+		drain();
+	}
+
+	// Return how many events were written
+	private int drain() {
+		int written = 0;
+		while (true) {
+			int slot = (int) (head & mask);
+			if (sequences.get(slot) != head + 1) {
+				break;
+			}
+
+			write(levels[slot], messages[slot], values[slot]);
+			levels[slot] = null;
+			messages[slot] = null;
+			values[slot] = null;
+			sequences.set(slot, head + CAPACITY);
+			head++;
+			written++;
+		}
+
+		long droppedNow = dropped.sum();
+		if (droppedNow != reportedDropped) {
+			write(Level.WARN, "Log events dropped: ", droppedNow - reportedDropped);
+			reportedDropped = droppedNow;
+			written++;
+		}
+		if (written > 0) {
+			out.flush();
+		}
+		return written;
+	}
+
+	private void write(Level eventLevel, String message, Object value) {
+		StringBuilder line = new StringBuilder(eventLevel.name()).append(' ').append(message);
+		if (value instanceof Throwable) {
+			out.println(line.append(value));
+			((Throwable) value).printStackTrace(out);
+			return;
+		}
+		if (value != null) {
+			line.append(value);
+		}
+		out.println(line);
+	}
+
+	private static Level levelFromEnvironment() {
+		String level = System.getenv("LOG_LEVEL");
+		return level != null ? Level.valueOf(level.toUpperCase()) : Level.INFO;
+	}
+}
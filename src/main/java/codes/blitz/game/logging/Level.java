@@ -0,0 +1,5 @@
+package codes.blitz.game.logging;
+
+public enum Level {
+	DEBUG, INFO, WARN, ERROR
+}
@@ -0,0 +1,145 @@
+package codes.blitz.game.message;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import codes.blitz.game.message.bot.BotMessage;
+import codes.blitz.game.message.game.Action;
+import codes.blitz.game.message.game.ActionType;
+import codes.blitz.game.message.game.BuyAction;
+import codes.blitz.game.message.game.Position;
+import codes.blitz.game.message.game.UnitAction;
+import codes.blitz.game.message.game.UnitActionType;
+import codes.blitz.game.message.game.UnitType;
+
+/**
+ * Reads the {@link BotMessage}s that {@link MessageEncoder} writes, the
+ * server side of the protocol. {@link Action} is abstract, so every action is
+ * built from its `type` field.
+ */
+public class BotMessageReader {
+	public BotMessage read(String json) throws IOException {
+		try (JsonReader in = new JsonReader(new StringReader(json))) {
+			BotMessage message = new BotMessage();
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+				case "type":
+					message.setType(skipNull(in) ? null : MessageType.valueOf(in.nextString()));
+					break;
+				case "actions":
+					message.setActions(readActions(in));
+					break;
+				case "crewName":
+					message.setCrewName(readString(in));
+					break;
+				case "token":
+					message.setToken(readString(in));
+					break;
+				case "tick":
+					message.setTick(skipNull(in) ? null : in.nextInt());
+					break;
+				default:
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return message;
+		}
+	}
+
+	private List<Action> readActions(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		List<Action> actions = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			actions.add(readAction(in));
+		}
+		in.endArray();
+		return actions;
+	}
+
+	private Action readAction(JsonReader in) throws IOException {
+		ActionType type = null;
+		UnitActionType action = null;
+		String unitId = null;
+		Position target = null;
+		UnitType unitType = null;
+
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "type":
+				type = ActionType.valueOf(in.nextString());
+				break;
+			case "action":
+				action = UnitActionType.valueOf(in.nextString());
+				break;
+			case "unitId":
+				unitId = readString(in);
+				break;
+			case "target":
+				target = readPosition(in);
+				break;
+			case "unitType":
+				unitType = UnitType.valueOf(in.nextString());
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+
+		if (type == ActionType.BUY) {
+			return new BuyAction(unitType);
+		}
+		if (type == ActionType.UNIT) {
+			return new UnitAction(action, unitId, target);
+		}
+		throw new IOException("Action without a type at " + in.getPath());
+	}
+
+	private static Position readPosition(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		int x = 0;
+		int y = 0;
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "x":
+				x = in.nextInt();
+				break;
+			case "y":
+				y = in.nextInt();
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return new Position(x, y);
+	}
+
+	private static String readString(JsonReader in) throws IOException {
+		return skipNull(in) ? null : in.nextString();
+	}
+
+	private static boolean skipNull(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return true;
+		}
+		return false;
+	}
+}
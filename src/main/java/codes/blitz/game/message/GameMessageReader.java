@@ -0,0 +1,515 @@
+package codes.blitz.game.message;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import codes.blitz.game.message.game.Crew;
+import codes.blitz.game.message.game.Depot;
+import codes.blitz.game.message.game.GameMap;
+import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.message.game.Position;
+import codes.blitz.game.message.game.Prices;
+import codes.blitz.game.message.game.Rules;
+import codes.blitz.game.message.game.TileGrid;
+import codes.blitz.game.message.game.TileType;
+import codes.blitz.game.message.game.Unit;
+import codes.blitz.game.message.game.UnitType;
+
+/**
+ * Reads a {@link GameMessage} straight off the JSON tokens, without going
+ * through reflection. Tiles are written directly into a {@link TileGrid},
+ * crew and unit ids are interned so that the same id is the same String from
+ * one tick to the next, and fields the bot doesn't use are skipped.
+ *
+ * The server resends the whole tile matrix every tick even though it never
+ * changes. When {@code reuseStaticMap} is on, the raw tiles section is
+ * fingerprinted first and, if it matches the previous message, the previous
+ * {@link TileGrid} (and everything it derived, like adjacency and mine slots)
+ * is reused instead of being parsed again.
+ *
+ * Not thread-safe, keep one reader per connection.
+ */
+public class GameMessageReader {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final Map<String, String> ids = new HashMap<>();
+	private final boolean reuseStaticMap;
+	private TileGrid previousGrid;
+	private long previousFingerprint;
+	private boolean reusePreviousGrid;
+
+	public GameMessageReader() {
+		this(true);
+	}
+
+	public GameMessageReader(boolean reuseStaticMap) {
+		this.reuseStaticMap = reuseStaticMap;
+	}
+
+	public GameMessage read(String json) throws IOException {
+		reusePreviousGrid = false;
+		long fingerprint = 0;
+		if (reuseStaticMap) {
+			fingerprint = fingerprintTiles(json);
+			reusePreviousGrid = previousGrid != null && fingerprint != 0
+					&& fingerprint == previousFingerprint;
+		}
+
+		GameMessage message;
+		try (JsonReader in = new JsonReader(new StringReader(json))) {
+			message = readGameMessage(in);
+		}
+
+		if (reuseStaticMap && message.getGameMap() != null) {
+			previousGrid = message.getGameMap().getTileGrid();
+			previousFingerprint = fingerprint;
+		}
+		return message;
+	}
+
+	/*
+	 * FNV-1a over the characters of the map's `"tiles"` array, without
+	 * copying it. Return 0 when there is no tiles section to fingerprint.
+	 */
+	static long fingerprintTiles(String json) {
+		int start = tilesStart(json);
+		if (start < 0) {
+			return 0;
+		}
+
+		long hash = FNV_OFFSET_BASIS;
+		int depth = 0;
+		boolean inString = false;
+		for (int i = start; i < json.length(); i++) {
+			char c = json.charAt(i);
+			hash = (hash ^ c) * FNV_PRIME;
+			if (inString) {
+				if (c == '\\') {
+					i++;
+				} else if (c == '"') {
+					inString = false;
+				}
+			} else if (c == '"') {
+				inString = true;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']' && --depth == 0) {
+				return hash == 0 ? 1 : hash;
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Where the array of `"map": { "tiles": [...] }` starts, or -1. Only keys
+	 * count, told apart from string values by the colon that follows them,
+	 * and only at the depth of the message's own map: an id, a name or an
+	 * error message that reads "tiles" is skipped.
+	 */
+	private static int tilesStart(String json) {
+		int depth = 0;
+		boolean inMap = false;
+		for (int i = 0; i < json.length(); i++) {
+			char c = json.charAt(i);
+			if (c == '{' || c == '[') {
+				depth++;
+			} else if (c == '}' || c == ']') {
+				depth--;
+				inMap = inMap && depth >= 2;
+			} else if (c == '"') {
+				int end = i + 1;
+				while (end < json.length() && json.charAt(end) != '"') {
+					end += json.charAt(end) == '\\' ? 2 : 1;
+				}
+				int value = skipWhitespace(json, end + 1);
+				if (value < json.length() && json.charAt(value) == ':') {
+					value = skipWhitespace(json, value + 1);
+					if (depth == 1 && isKey(json, i, end, "map")) {
+						inMap = value < json.length() && json.charAt(value) == '{';
+					} else if (inMap && depth == 2 && isKey(json, i, end, "tiles")) {
+						return value < json.length() && json.charAt(value) == '[' ? value : -1;
+					}
+				}
+				i = end;
+			}
+		}
+		return -1;
+	}
+
+	// Whether the string between the quotes at `open` and `close` is `key`
+	private static boolean isKey(String json, int open, int close, String key) {
+		return close - open - 1 == key.length() && json.startsWith(key, open + 1);
+	}
+
+	private static int skipWhitespace(String json, int i) {
+		while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private GameMessage readGameMessage(JsonReader in) throws IOException {
+		GameMessage message = new GameMessage();
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "tick":
+				message.setTick(in.nextInt());
+				break;
+			case "totalTick":
+				message.setTotalTick(in.nextInt());
+				break;
+			case "crewId":
+				message.setCrewId(readId(in));
+				break;
+			case "crews":
+				message.setCrews(readCrews(in));
+				break;
+			case "map":
+				message.setGameMap(readGameMap(in));
+				break;
+			case "rules":
+				message.setRules(readRules(in));
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return message;
+	}
+
+	private List<Crew> readCrews(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		List<Crew> crews = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			crews.add(readCrew(in));
+		}
+		in.endArray();
+		return crews;
+	}
+
+	private Crew readCrew(JsonReader in) throws IOException {
+		Crew crew = new Crew();
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "id":
+				crew.setId(readId(in));
+				break;
+			case "name":
+				crew.setName(readString(in));
+				break;
+			case "homeBase":
+				crew.setHomeBase(readPosition(in));
+				break;
+			case "blitzium":
+				crew.setBlitzium(in.nextInt());
+				break;
+			case "totalBlitzium":
+				crew.setTotalBlitzium(in.nextInt());
+				break;
+			case "units":
+				crew.setUnits(readUnits(in));
+				break;
+			case "errors":
+				crew.setErrors(readStrings(in));
+				break;
+			case "prices":
+				crew.setPrices(readPrices(in));
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return crew;
+	}
+
+	private List<Unit> readUnits(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		List<Unit> units = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			units.add(readUnit(in));
+		}
+		in.endArray();
+		return units;
+	}
+
+	private Unit readUnit(JsonReader in) throws IOException {
+		Unit unit = new Unit();
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "id":
+				unit.setId(readId(in));
+				break;
+			case "type":
+				unit.setType(skipNull(in) ? null : UnitType.valueOf(in.nextString()));
+				break;
+			case "blitzium":
+				unit.setBlitzium(in.nextInt());
+				break;
+			case "position":
+				unit.setPosition(readPosition(in));
+				break;
+			case "path":
+				unit.setPath(readPositions(in));
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return unit;
+	}
+
+	private GameMap readGameMap(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		GameMap map = new GameMap();
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "tiles":
+				if (reusePreviousGrid) {
+					in.skipValue();
+					map.setTileGrid(previousGrid);
+				} else {
+					map.setTileGrid(readTiles(in));
+				}
+				break;
+			case "depots":
+				map.setDepots(readDepots(in));
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return map;
+	}
+
+	// The server sends tiles column by column, `tiles[x][y]`
+	private TileGrid readTiles(JsonReader in) throws IOException {
+		in.beginArray();
+		int size = 0;
+		byte[] tiles = null;
+		int x = 0;
+		while (in.hasNext()) {
+			in.beginArray();
+			if (tiles == null) {
+				byte[] column = new byte[64];
+				while (in.hasNext()) {
+					if (size == column.length) {
+						column = Arrays.copyOf(column, size * 2);
+					}
+					column[size++] = tileCode(in.nextString());
+				}
+				tiles = new byte[size * size];
+				for (int y = 0; y < size; y++) {
+					tiles[y * size] = column[y];
+				}
+			} else {
+				int y = 0;
+				while (in.hasNext()) {
+					byte tile = tileCode(in.nextString());
+					if (y < size && x < size) {
+						tiles[y * size + x] = tile;
+					}
+					y++;
+				}
+				if (y != size) {
+					throw new IOException(String.format(
+							"Map is not square, expected %s tiles per column, got %s.", size, y));
+				}
+			}
+			in.endArray();
+			x++;
+		}
+		in.endArray();
+
+		if (x != size) {
+			throw new IOException(String.format(
+					"Map is not square, got %s columns of %s tiles.", x, size));
+		}
+		return new TileGrid(size, tiles == null ? new byte[0] : tiles);
+	}
+
+	private static byte tileCode(String rawTile) {
+		return (byte) TileType.getTileTypeFromString(rawTile).ordinal();
+	}
+
+	private Depot[] readDepots(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		List<Depot> depots = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			Depot depot = new Depot();
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+				case "position":
+					depot.setPosition(readPosition(in));
+					break;
+				case "blitzium":
+					depot.setBlitzium(in.nextInt());
+					break;
+				default:
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			depots.add(depot);
+		}
+		in.endArray();
+		return depots.toArray(new Depot[0]);
+	}
+
+	private Rules readRules(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		Rules rules = new Rules();
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "MAX_MINER_CARGO":
+				rules.setMaxMinerCargo(in.nextInt());
+				break;
+			case "MAX_CART_CARGO":
+				rules.setMaxCartCargo(in.nextInt());
+				break;
+			case "MAX_MINER_MOVE_CARGO":
+				rules.setMaxMinerMoveCargo(in.nextInt());
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return rules;
+	}
+
+	private Prices readPrices(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		Prices prices = new Prices();
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "MINER":
+				prices.setMinerPrice(in.nextInt());
+				break;
+			case "OUTLAW":
+				prices.setOutlawPrice(in.nextInt());
+				break;
+			case "CART":
+				prices.setCartPrice(in.nextInt());
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return prices;
+	}
+
+	private Position readPosition(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		int x = 0;
+		int y = 0;
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "x":
+				x = in.nextInt();
+				break;
+			case "y":
+				y = in.nextInt();
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return new Position(x, y);
+	}
+
+	private List<Position> readPositions(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		List<Position> positions = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			positions.add(readPosition(in));
+		}
+		in.endArray();
+		return positions;
+	}
+
+	private List<String> readStrings(JsonReader in) throws IOException {
+		if (skipNull(in)) {
+			return null;
+		}
+
+		List<String> strings = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			strings.add(readString(in));
+		}
+		in.endArray();
+		return strings;
+	}
+
+	private String readId(JsonReader in) throws IOException {
+		String id = readString(in);
+		if (id == null) {
+			return null;
+		}
+		String interned = ids.putIfAbsent(id, id);
+		return interned == null ? id : interned;
+	}
+
+	private static String readString(JsonReader in) throws IOException {
+		return skipNull(in) ? null : in.nextString();
+	}
+
+	private static boolean skipNull(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,175 @@
+package codes.blitz.game.message;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.google.gson.stream.JsonWriter;
+
+import codes.blitz.game.message.game.Crew;
+import codes.blitz.game.message.game.Depot;
+import codes.blitz.game.message.game.GameMap;
+import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.message.game.Position;
+import codes.blitz.game.message.game.Prices;
+import codes.blitz.game.message.game.Rules;
+import codes.blitz.game.message.game.TileGrid;
+import codes.blitz.game.message.game.Unit;
+
+/**
+ * Writes a {@link GameMessage} in the same format the game server sends,
+ * the counterpart of {@link GameMessageReader}. Used to serve simulated
+ * ticks to a bot.
+ */
+public class GameMessageWriter {
+	public String write(GameMessage message) {
+		StringWriter out = new StringWriter();
+		try (JsonWriter json = new JsonWriter(out)) {
+			writeGameMessage(json, message);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toString();
+	}
+
+	private void writeGameMessage(JsonWriter out, GameMessage message)
+			throws IOException {
+		out.beginObject();
+		out.name("tick").value(message.getTick());
+		out.name("totalTick").value(message.getTotalTick());
+		out.name("crewId").value(message.getCrewId());
+		out.name("crews").beginArray();
+		for (Crew crew : message.getCrews()) {
+			writeCrew(out, crew);
+		}
+		out.endArray();
+		out.name("map");
+		writeGameMap(out, message.getGameMap());
+		out.name("rules");
+		writeRules(out, message.getRules());
+		out.endObject();
+	}
+
+	private void writeCrew(JsonWriter out, Crew crew) throws IOException {
+		out.beginObject();
+		out.name("id").value(crew.getId());
+		out.name("name").value(crew.getName());
+		out.name("homeBase");
+		writePosition(out, crew.getHomeBase());
+		out.name("blitzium").value(crew.getBlitzium());
+		out.name("totalBlitzium").value(crew.getTotalBlitzium());
+		out.name("units").beginArray();
+		for (Unit unit : crew.getUnits()) {
+			writeUnit(out, unit);
+		}
+		out.endArray();
+		out.name("errors");
+		writeStrings(out, crew.getErrors());
+		out.name("prices");
+		writePrices(out, crew.getPrices());
+		out.endObject();
+	}
+
+	private void writeUnit(JsonWriter out, Unit unit) throws IOException {
+		out.beginObject();
+		out.name("id").value(unit.getId());
+		out.name("type").value(unit.getType() == null ? null : unit.getType().name());
+		out.name("blitzium").value(unit.getBlitzium());
+		out.name("position");
+		writePosition(out, unit.getPosition());
+		out.name("path").beginArray();
+		if (unit.getPath() != null) {
+			for (Position position : unit.getPath()) {
+				writePosition(out, position);
+			}
+		}
+		out.endArray();
+		out.endObject();
+	}
+
+	// Tiles go column by column, `tiles[x][y]`, like the server sends them
+	private void writeGameMap(JsonWriter out, GameMap map) throws IOException {
+		if (map == null) {
+			out.nullValue();
+			return;
+		}
+
+		TileGrid grid = map.getTileGrid();
+		out.beginObject();
+		out.name("tiles").beginArray();
+		for (int x = 0; x < grid.getSize(); x++) {
+			out.beginArray();
+			for (int y = 0; y < grid.getSize(); y++) {
+				out.value(grid.getTileType(grid.indexOf(x, y)).name());
+			}
+			out.endArray();
+		}
+		out.endArray();
+		out.name("depots").beginArray();
+		if (map.getDepots() != null) {
+			for (Depot depot : map.getDepots()) {
+				out.beginObject();
+				out.name("position");
+				writePosition(out, depot.getPosition());
+				out.name("blitzium").value(depot.getBlitzium());
+				out.endObject();
+			}
+		}
+		out.endArray();
+		out.endObject();
+	}
+
+	private void writeRules(JsonWriter out, Rules rules) throws IOException {
+		if (rules == null) {
+			out.nullValue();
+			return;
+		}
+
+		out.beginObject();
+		out.name("MAX_MINER_CARGO").value(rules.getMaxMinerCargo());
+		out.name("MAX_CART_CARGO").value(rules.getMaxCartCargo());
+		out.name("MAX_MINER_MOVE_CARGO").value(rules.getMaxMinerMoveCargo());
+		out.endObject();
+	}
+
+	private void writePrices(JsonWriter out, Prices prices) throws IOException {
+		if (prices == null) {
+			out.nullValue();
+			return;
+		}
+
+		out.beginObject();
+		out.name("MINER").value(prices.getMinerPrice());
+		out.name("OUTLAW").value(prices.getOutlawPrice());
+		out.name("CART").value(prices.getCartPrice());
+		out.endObject();
+	}
+
+	private void writePosition(JsonWriter out, Position position)
+			throws IOException {
+		if (position == null) {
+			out.nullValue();
+			return;
+		}
+
+		out.beginObject();
+		out.name("x").value(position.getX());
+		out.name("y").value(position.getY());
+		out.endObject();
+	}
+
+	private void writeStrings(JsonWriter out, List<String> strings)
+			throws IOException {
+		if (strings == null) {
+			out.nullValue();
+			return;
+		}
+
+		out.beginArray();
+		for (String string : strings) {
+			out.value(string);
+		}
+		out.endArray();
+	}
+}
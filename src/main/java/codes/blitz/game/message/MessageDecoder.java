@@ -1,20 +1,34 @@
 package codes.blitz.game.message;
 
+import java.io.IOException;
+
 import javax.websocket.DecodeException;
 import javax.websocket.Decoder;
 import javax.websocket.EndpointConfig;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
 import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.metrics.Phase;
+import codes.blitz.game.metrics.TickMetrics;
 
 public class MessageDecoder implements Decoder.Text<GameMessage> {
-	private static Gson gson = new GsonBuilder().create();
+	private final GameMessageReader reader = new GameMessageReader();
 
 	@Override
 	public GameMessage decode(String message) throws DecodeException {
-		return gson.fromJson(message, GameMessage.class);
+		long receivedAt = System.nanoTime();
+		try {
+			GameMessage gameMessage = reader.read(message);
+			gameMessage.setReceivedAtNanos(receivedAt);
+			gameMessage.setDecodedAtNanos(System.nanoTime());
+			TickMetrics.getInstance().record(Phase.DECODE,
+					gameMessage.getDecodedAtNanos() - receivedAt);
+			return gameMessage;
+		} catch (IOException | JsonParseException | IllegalStateException
+				| IllegalArgumentException e) {
+			throw new DecodeException(message, "Could not decode game message", e);
+		}
 	}
 
 	@Override
@@ -31,4 +45,4 @@ public class MessageDecoder implements Decoder.Text<GameMessage> {
 	public void destroy() {
 		// Close resources
 	}
-}
\ No newline at end of file
+}
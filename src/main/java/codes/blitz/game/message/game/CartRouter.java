@@ -0,0 +1,240 @@
+package codes.blitz.game.message.game;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Plans which miners every cart collects from, and in which order, before
+ * heading back to base: a small capacitated vehicle routing problem, solved
+ * with cheapest insertion under the cart's cargo limit. An insertion costs
+ * the time it adds to the tour, plus the time a miner that can't mine
+ * anymore spends waiting for the cart.
+ *
+ * A miner next to a mine is expected to have mined one more blitzium for
+ * every tick the cart takes to get there. Handing blitzium over costs the
+ * miner a tick of mining, so an empty cart waits by its first miner until it
+ * can bring back at least the minimum pickup. Once a cart carries something,
+ * bringing it home beats waiting: further stops must be ready by the time
+ * the cart gets there, and must cost less of a detour than a separate trip
+ * from base to that miner would.
+ *
+ * Distances are measured on the bare map: units move out of the way, and a
+ * miner boxed in by the carts waiting for it still has to be collected.
+ *
+ * Meant to live for the whole game. Routes are re-planned every tick from
+ * the previous ones: a cart keeps heading for the same miner as long as it's
+ * still worth it, so carts don't change their minds every tick, and the rest
+ * of the tours is rebuilt around those.
+ */
+public class CartRouter {
+    public static final int DEFAULT_MIN_PICKUP = 25;
+
+    private final int minPickup;
+    private Map<String, List<String>> previousRoutes = new HashMap<>();
+    private Map<String, Integer> plannedPickups = new HashMap<>();
+
+    public CartRouter() {
+        this(DEFAULT_MIN_PICKUP);
+    }
+
+    public CartRouter(int minPickup) {
+        this.minPickup = minPickup;
+    }
+
+    /**
+     * The miners each cart should collect from, in order. Carts with nothing
+     * to collect get an empty route.
+     */
+    public Map<Unit, List<Unit>> plan(World world, List<Unit> carts, List<Unit> miners, Position base) {
+        var rules = world.getGameMessage().getRules();
+        var sortedCarts = new ArrayList<>(carts);
+        sortedCarts.sort(Comparator.comparing(Unit::getId));
+        var minersById = new HashMap<String, Unit>();
+        for (var miner: miners) {
+            minersById.put(miner.getId(), miner);
+        }
+
+        var routes = new ArrayList<Route>();
+        var routed = new HashSet<String>();
+        for (var cart: sortedCarts) {
+            var route = new Route(world, cart, rules.getMaxCartCargo() - cart.getBlitzium(), base, rules.getMaxMinerCargo());
+            // Keep heading for the same miner as long as it's still worth it
+            var previous = previousRoutes.getOrDefault(cart.getId(), List.of());
+            var heading = previous.isEmpty() ? null : minersById.get(previous.get(0));
+            if (heading != null && !routed.contains(heading.getId()) && route.insertionCost(heading, 0) != Long.MAX_VALUE) {
+                route.insert(heading, 0);
+                routed.add(heading.getId());
+            }
+            routes.add(route);
+        }
+
+        var waiting = miners.stream()
+                .filter(miner -> !routed.contains(miner.getId()))
+                .sorted(Comparator.comparing(Unit::getId))
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        // Parallel cheapest insertion: the cheapest feasible (miner, cart, position) first
+        while (!waiting.isEmpty()) {
+            Unit bestMiner = null;
+            Route bestRoute = null;
+            var bestIndex = -1;
+            var bestCost = Long.MAX_VALUE;
+            for (var miner: waiting) {
+                for (var route: routes) {
+                    for (int index = 0; index <= route.stops.size(); index++) {
+                        var cost = route.insertionCost(miner, index);
+                        if (cost < bestCost && route.isWorthIt(miner, cost)) {
+                            bestCost = cost;
+                            bestMiner = miner;
+                            bestRoute = route;
+                            bestIndex = index;
+                        }
+                    }
+                }
+            }
+            if (bestMiner == null) {
+                break;
+            }
+            bestRoute.insert(bestMiner, bestIndex);
+            waiting.remove(bestMiner);
+        }
+
+        Map<Unit, List<Unit>> plan = new HashMap<>();
+        Map<String, List<String>> routeIds = new HashMap<>();
+        Map<String, Integer> pickups = new HashMap<>();
+        for (var route: routes) {
+            plan.put(route.cart, route.stops);
+            var ids = new ArrayList<String>();
+            var routePickups = route.tour(route.stops).pickups;
+            for (int i = 0; i < route.stops.size(); i++) {
+                var id = route.stops.get(i).getId();
+                ids.add(id);
+                pickups.put(id, routePickups[i]);
+            }
+            routeIds.put(route.cart.getId(), ids);
+        }
+        previousRoutes = routeIds;
+        plannedPickups = pickups;
+        return plan;
+    }
+
+    public int getMinPickup() {
+        return minPickup;
+    }
+
+    /**
+     * How much blitzium the last plan expects `miner` to hand over to the
+     * cart that comes for it, 0 when no cart does.
+     */
+    public int plannedPickup(Unit miner) {
+        return plannedPickups.getOrDefault(miner.getId(), 0);
+    }
+
+    private class Route {
+        private final World world;
+        private final Unit cart;
+        private final int room;
+        private final Position base;
+        private final int maxMinerCargo;
+        private final List<Unit> stops = new ArrayList<>();
+        private long cost;
+
+        Route(World world, Unit cart, int room, Position base, int maxMinerCargo) {
+            this.world = world;
+            this.cart = cart;
+            this.room = room;
+            this.base = base;
+            this.maxMinerCargo = maxMinerCargo;
+        }
+
+        void insert(Unit miner, int index) {
+            stops.add(index, miner);
+            cost = tour(stops).cost;
+        }
+
+        // How much longer the tour gets with `miner` just before the stop at `index`, MAX_VALUE when it can't be done
+        long insertionCost(Unit miner, int index) {
+            var candidate = new ArrayList<>(stops);
+            candidate.add(index, miner);
+            var tour = tour(candidate);
+            return tour == null ? Long.MAX_VALUE : tour.cost - cost;
+        }
+
+        // A cart that already collects something only goes out of its way for a miner close to its path home
+        boolean isWorthIt(Unit miner, long insertionCost) {
+            if (stops.isEmpty() && cart.getBlitzium() == 0) {
+                return true;
+            }
+            var trip = distance(base, miner.getPosition());
+            return trip != DistanceField.UNREACHABLE && insertionCost <= trip;
+        }
+
+        /*
+         * Walks `route` and back to base, or returns null when one of its
+         * stops isn't worth it: unreachable, the cart already full, or not
+         * enough blitzium there by the time the cart gets there. The cost is
+         * the time the whole tour takes, plus the time every miner that can't
+         * mine anymore spends waiting for the cart.
+         */
+        Tour tour(List<Unit> route) {
+            var pickups = new int[route.size()];
+            var load = 0;
+            long ticks = 0;
+            long idleTicks = 0;
+            var position = cart.getPosition();
+            for (int i = 0; i < route.size(); i++) {
+                var stop = route.get(i);
+                var walk = distance(position, stop.getPosition());
+                if (walk == DistanceField.UNREACHABLE || load >= room) {
+                    return null;
+                }
+                // Stopping next to the miner is enough
+                ticks += Math.max(0, walk - 1);
+                var cargo = stop.getBlitzium();
+                var mining = isMining(stop);
+                if (mining) {
+                    cargo = (int) Math.min(maxMinerCargo, cargo + ticks);
+                } else {
+                    idleTicks += ticks;
+                }
+
+                var wanted = Math.max(1, Math.min(minPickup, room - load));
+                if (cargo < wanted) {
+                    if (load > 0 || cart.getBlitzium() > 0 || !mining) {
+                        return null;
+                    }
+                    ticks += wanted - cargo;
+                    cargo = wanted;
+                }
+                pickups[i] = Math.min(cargo, room - load);
+                load += pickups[i];
+                position = stop.getPosition();
+            }
+            var home = distance(position, base);
+            if (home == DistanceField.UNREACHABLE) {
+                return null;
+            }
+            return new Tour(pickups, route.isEmpty() ? 0 : ticks + home + idleTicks);
+        }
+
+        private boolean isMining(Unit miner) {
+            var grid = world.getGrid();
+            var cell = grid.indexOf(miner.getPosition());
+            return cell >= 0 && miner.getBlitzium() < maxMinerCargo && grid.isNextToType(cell, TileType.MINE);
+        }
+
+        private int distance(Position from, Position to) {
+            return world.terrainDistance(from, to);
+        }
+    }
+
+    private static class Tour {
+        private final int[] pickups;
+        private final long cost;
+
+        Tour(int[] pickups, long cost) {
+            this.pickups = pickups;
+            this.cost = cost;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package codes.blitz.game.message.game;
+
+/**
+ * Sets of {@link TileGrid} cells packed 64 to a {@code long}, so that testing
+ * a cell is one shift and one AND, and combining two layers is one OR per
+ * word.
+ */
+final class CellBits {
+    private CellBits() {
+    }
+
+    static long[] forCells(int cellCount) {
+        return new long[(cellCount + 63) >>> 6];
+    }
+
+    // Java only keeps the low 6 bits of a long shift, so `1L << cell` is the cell's bit in its word
+    static boolean contains(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    static void add(long[] bits, int cell) {
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    static long[] union(long[] a, long[] b) {
+        var union = new long[a.length];
+        for (int i = 0; i < a.length; i++) {
+            union[i] = a[i] | b[i];
+        }
+        return union;
+    }
+}
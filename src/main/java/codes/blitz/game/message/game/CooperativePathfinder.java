@@ -0,0 +1,298 @@
+package codes.blitz.game.message.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans several units one after the other over a time-expanded grid, in the
+ * spirit of windowed hierarchical cooperative A*. Every planned path reserves
+ * its cells for the ticks it occupies them, so the units planned afterwards
+ * route around it (or wait) instead of treating those cells as blocked
+ * forever. The other crews' units are expected where their announced paths
+ * take them, see {@link World#isPassableAt(int, int)}.
+ *
+ * Our units that don't move this tick are {@link #hold held} for the whole
+ * window. The units still to be planned are {@link #expect expected}: their
+ * squares stay theirs for the next tick, since they may not have left by
+ * then.
+ *
+ * Searches are bounded by the window: past it, the remaining cost is taken
+ * from the destination's distance field, which the {@link World} memoizes for
+ * the whole tick.
+ */
+public class CooperativePathfinder {
+    public static final int DEFAULT_WINDOW = 8;
+
+    private static final int FREE = 0;
+
+    private final World world;
+    private final TileGrid grid;
+    private final int window;
+    private final int cellCount;
+
+    // Which agent (1-based) holds each (tick, cell), indexed by tick * cellCount + cell
+    private final int[] reservations;
+    // Squares of the expected units that aren't planned yet
+    private final boolean[] expected;
+    private final int[] visitedBy;
+    private final int[] parentState;
+    private final StateHeap open;
+    private int agentCount;
+
+    public CooperativePathfinder(World world, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("The window must be at least one tick, got " + window);
+        }
+        this.world = world;
+        this.grid = world.getGrid();
+        this.window = window;
+        this.cellCount = grid.getCellCount();
+
+        var stateCount = (window + 1) * cellCount;
+        this.reservations = new int[stateCount];
+        this.expected = new boolean[cellCount];
+        this.visitedBy = new int[stateCount];
+        this.parentState = new int[stateCount];
+        this.open = new StateHeap(stateCount);
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    // Reserves `position` for the whole window, for a unit that stays there this tick
+    public void hold(Position position) {
+        var cell = grid.indexOf(position);
+        if (cell >= 0) {
+            holdCell(++agentCount, cell);
+        }
+    }
+
+    // Keeps `position` for the next tick, for a unit standing there that gets planned later
+    public void expect(Position position) {
+        var cell = grid.indexOf(position);
+        if (cell >= 0) {
+            expected[cell] = true;
+        }
+    }
+
+    /**
+     * Plans a path for a unit standing on {@code start} and reserves it. When
+     * {@code dest} can't be walked on (a base, a unit...), standing next to it
+     * counts as arriving.
+     *
+     * Return `null` when there is no viable path, the unit is then held on
+     * {@code start}. Otherwise the path starts with {@code start} and holds
+     * one position per tick, waits included.
+     */
+    public List<Position> plan(Position start, Position dest) {
+        var startCell = grid.indexOf(start);
+        var destCell = grid.indexOf(dest);
+        if (startCell < 0 || destCell < 0) {
+            return null;
+        }
+
+        var agent = ++agentCount;
+        expected[startCell] = false;
+        var field = world.distanceFieldFrom(dest);
+        var stopNextToDest = !world.isPassable(destCell);
+
+        var startState = startCell;
+        if (heuristic(field, startCell, stopNextToDest) == DistanceField.UNREACHABLE) {
+            holdCell(agent, startCell);
+            return null;
+        }
+
+        open.clear();
+        visitedBy[startState] = agent;
+        parentState[startState] = -1;
+        open.push(startState, heuristic(field, startCell, stopNextToDest));
+
+        var goalState = -1;
+        while (!open.isEmpty()) {
+            var state = open.pop();
+            var tick = state / cellCount;
+            var cell = state % cellCount;
+
+            if (tick == window || isGoal(cell, destCell, stopNextToDest)) {
+                goalState = state;
+                break;
+            }
+
+            var nextTick = tick + 1;
+            // Waiting in place is always an option, as long as nobody planned to come here
+            tryPush(agent, state, cell, cell, nextTick, field, stopNextToDest);
+            var end = grid.adjacencyEnd(cell);
+            for (int i = grid.adjacencyStart(cell); i < end; i++) {
+                var neighbor = grid.adjacentCell(i);
+                if (world.isPassableAt(neighbor, nextTick)) {
+                    tryPush(agent, state, cell, neighbor, nextTick, field, stopNextToDest);
+                }
+            }
+        }
+
+        if (goalState < 0) {
+            holdCell(agent, startCell);
+            return null;
+        }
+
+        var path = buildPath(goalState);
+        reserve(agent, path);
+        return path;
+    }
+
+    private void tryPush(int agent, int fromState, int from, int to, int tick, DistanceField field,
+                         boolean stopNextToDest) {
+        var state = tick * cellCount + to;
+        if (visitedBy[state] == agent) {
+            return;
+        }
+
+        var holder = reservations[state];
+        if (holder != FREE && holder != agent) {
+            return;
+        }
+        if (tick == 1 && expected[to]) {
+            return;
+        }
+        // Two units can't swap cells during the same tick
+        var previousHolder = reservations[(tick - 1) * cellCount + to];
+        if (from != to && previousHolder != FREE && previousHolder != agent
+                && reservations[tick * cellCount + from] == previousHolder) {
+            return;
+        }
+
+        var h = heuristic(field, to, stopNextToDest);
+        if (h == DistanceField.UNREACHABLE) {
+            return;
+        }
+
+        visitedBy[state] = agent;
+        parentState[state] = fromState;
+        open.push(state, tick + h);
+    }
+
+    private boolean isGoal(int cell, int destCell, boolean stopNextToDest) {
+        return stopNextToDest ? grid.isAdjacent(cell, destCell) : cell == destCell;
+    }
+
+    private int heuristic(DistanceField field, int cell, boolean stopNextToDest) {
+        var distance = field.distanceTo(cell);
+        if (distance == DistanceField.UNREACHABLE) {
+            return distance;
+        }
+        return stopNextToDest ? Math.max(0, distance - 1) : distance;
+    }
+
+    private List<Position> buildPath(int goalState) {
+        var length = goalState / cellCount + 1;
+        var path = new ArrayList<Position>(length);
+        for (int i = 0; i < length; i++) {
+            path.add(null);
+        }
+
+        for (int state = goalState; state >= 0; state = parentState[state]) {
+            path.set(state / cellCount, grid.positionAt(state % cellCount));
+        }
+        return path;
+    }
+
+    private void holdCell(int agent, int cell) {
+        for (int tick = 0; tick <= window; tick++) {
+            reservations[tick * cellCount + cell] = agent;
+        }
+    }
+
+    /*
+     * The unit stays on its last cell for the rest of the window. A unit
+     * stepping out of a chokepoint keeps it for this tick too: units move one
+     * at a time, so following right behind only works when the leader happens
+     * to move first, and a failed step in a corridor holds up everyone
+     * behind. Later ticks are planned again anyway.
+     */
+    private void reserve(int agent, List<Position> path) {
+        for (int tick = 0; tick <= window; tick++) {
+            var position = path.get(Math.min(tick, path.size() - 1));
+            reservations[tick * cellCount + grid.indexOf(position)] = agent;
+        }
+        var startCell = grid.indexOf(path.get(0));
+        if (world.getMapIndex().isChokepoint(startCell) && reservations[cellCount + startCell] == FREE) {
+            reservations[cellCount + startCell] = agent;
+        }
+    }
+
+    // Binary min-heap of states, ties go to the state furthest in time
+    private static class StateHeap {
+        private final int[] states;
+        private final int[] priorities;
+        private int size;
+
+        StateHeap(int capacity) {
+            this.states = new int[capacity];
+            this.priorities = new int[capacity];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int state, int priority) {
+            var i = size++;
+            states[i] = state;
+            priorities[i] = priority;
+            while (i > 0) {
+                var parent = (i - 1) / 2;
+                if (!before(i, parent)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        int pop() {
+            var top = states[0];
+            size--;
+            states[0] = states[size];
+            priorities[0] = priorities[size];
+
+            var i = 0;
+            while (true) {
+                var left = 2 * i + 1;
+                var right = left + 1;
+                var smallest = i;
+                if (left < size && before(left, smallest)) {
+                    smallest = left;
+                }
+                if (right < size && before(right, smallest)) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return top;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private boolean before(int a, int b) {
+            if (priorities[a] != priorities[b]) {
+                return priorities[a] < priorities[b];
+            }
+            return states[a] > states[b];
+        }
+
+        private void swap(int a, int b) {
+            var state = states[a];
+            var priority = priorities[a];
+            states[a] = states[b];
+            priorities[a] = priorities[b];
+            states[b] = state;
+            priorities[b] = priority;
+        }
+    }
+}
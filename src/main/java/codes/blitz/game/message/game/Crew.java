@@ -71,4 +71,8 @@ public class Crew {
 	public Prices getPrices() {
 		return prices;
 	}
+
+	public void setPrices(Prices prices) {
+		this.prices = prices;
+	}
 }
@@ -0,0 +1,313 @@
+package codes.blitz.game.message.game;
+
+import java.util.*;
+
+/**
+ * Shortest paths from a single source square over the squares of a
+ * {@link World} that units can walk through. Blocked squares next to the
+ * explored area are reached too, they just aren't expanded.
+ *
+ * Only the distance and the predecessor of every cell are kept, paths are
+ * rebuilt from the predecessors when someone asks for one.
+ */
+public class DistanceField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    static final int NO_PARENT = -1;
+
+    private final TileGrid grid;
+    private final Position source;
+    private final int sourceCell;
+    private final int[] distances;
+    private final int[] parents;
+
+    DistanceField(World world, Position source) {
+        this(world.getGrid(), source, new int[world.getGrid().getCellCount()],
+                new int[world.getGrid().getCellCount()]);
+        Arrays.fill(distances, UNREACHABLE);
+        Arrays.fill(parents, NO_PARENT);
+
+        if (sourceCell < 0) {
+            return;
+        }
+
+        var queue = new int[grid.getCellCount()];
+        var head = 0;
+        var tail = 0;
+        distances[sourceCell] = 0;
+        queue[tail++] = sourceCell;
+
+        while (head < tail) {
+            var cell = queue[head++];
+            var end = grid.adjacencyEnd(cell);
+
+            for (int i = grid.adjacencyStart(cell); i < end; i++) {
+                var neighbor = grid.adjacentCell(i);
+                if (distances[neighbor] == UNREACHABLE) {
+                    distances[neighbor] = distances[cell] + 1;
+                    parents[neighbor] = cell;
+                    if (world.isPassable(neighbor)) {
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+    }
+
+    private DistanceField(TileGrid grid, Position source, int[] distances, int[] parents) {
+        this.grid = grid;
+        this.source = source;
+        this.sourceCell = grid.indexOf(source);
+        this.distances = distances;
+        this.parents = parents;
+    }
+
+    /**
+     * Copy of this field for {@code world}, where only {@code changedCells}
+     * became walkable or blocked. Cells whose shortest path went through a
+     * newly blocked cell are invalidated and re-seeded from their neighbors,
+     * newly walkable cells are re-expanded, and the corrections are
+     * propagated in increasing distance order. Everything else is kept as is.
+     */
+    DistanceField repair(World world, int[] changedCells) {
+        var repaired = new DistanceField(world.getGrid(), source, distances.clone(), parents.clone());
+        if (changedCells.length > 0 && sourceCell >= 0) {
+            repaired.propagateChanges(world, changedCells);
+        }
+        return repaired;
+    }
+
+    private void propagateChanges(World world, int[] changedCells) {
+        var cellCount = grid.getCellCount();
+        var newlyBlocked = new boolean[cellCount];
+        var anyBlocked = false;
+        for (var cell: changedCells) {
+            if (cell != sourceCell && !world.isPassable(cell)) {
+                newlyBlocked[cell] = true;
+                anyBlocked = true;
+            }
+        }
+
+        var queue = new RepairQueue(cellCount);
+        if (anyBlocked) {
+            var invalid = invalidateBehind(newlyBlocked);
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (invalid[cell] && seedFromNeighbors(world, cell, invalid)) {
+                    queue.addSeed(cell, distances[cell]);
+                }
+            }
+        }
+
+        for (var cell: changedCells) {
+            if (!newlyBlocked[cell] && distances[cell] != UNREACHABLE) {
+                queue.addSeed(cell, distances[cell]);
+            }
+        }
+        queue.sortSeeds();
+
+        while (!queue.isEmpty()) {
+            var distance = queue.peekDistance();
+            var cell = queue.pop();
+            if (distance != distances[cell] || !(cell == sourceCell || world.isPassable(cell))) {
+                continue;
+            }
+
+            var end = grid.adjacencyEnd(cell);
+            for (int i = grid.adjacencyStart(cell); i < end; i++) {
+                var neighbor = grid.adjacentCell(i);
+                if (distance + 1 < distances[neighbor]) {
+                    distances[neighbor] = distance + 1;
+                    parents[neighbor] = cell;
+                    queue.push(neighbor, distance + 1);
+                }
+            }
+        }
+    }
+
+    // Forget every cell whose predecessor chain goes through a newly blocked cell
+    private boolean[] invalidateBehind(boolean[] newlyBlocked) {
+        var cellCount = grid.getCellCount();
+        var invalid = new boolean[cellCount];
+
+        // predecessors are always closer to the source, so visiting cells by
+        // increasing distance sees every parent before its children
+        var maxDistance = 0;
+        for (var distance: distances) {
+            if (distance != UNREACHABLE) {
+                maxDistance = Math.max(maxDistance, distance);
+            }
+        }
+        var counts = new int[maxDistance + 2];
+        for (var distance: distances) {
+            if (distance != UNREACHABLE) {
+                counts[distance + 1]++;
+            }
+        }
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += counts[i - 1];
+        }
+        var order = new int[counts[counts.length - 1]];
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (distances[cell] != UNREACHABLE) {
+                order[counts[distances[cell]]++] = cell;
+            }
+        }
+
+        for (var cell: order) {
+            var parent = parents[cell];
+            if (parent != NO_PARENT && (newlyBlocked[parent] || invalid[parent])) {
+                invalid[cell] = true;
+            }
+        }
+
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (invalid[cell]) {
+                distances[cell] = UNREACHABLE;
+                parents[cell] = NO_PARENT;
+            }
+        }
+        return invalid;
+    }
+
+    private boolean seedFromNeighbors(World world, int cell, boolean[] invalid) {
+        var end = grid.adjacencyEnd(cell);
+        for (int i = grid.adjacencyStart(cell); i < end; i++) {
+            var neighbor = grid.adjacentCell(i);
+            if (invalid[neighbor] || distances[neighbor] == UNREACHABLE) {
+                continue;
+            }
+            if (!(neighbor == sourceCell || world.isPassable(neighbor))) {
+                continue;
+            }
+            if (distances[neighbor] + 1 < distances[cell]) {
+                distances[cell] = distances[neighbor] + 1;
+                parents[cell] = neighbor;
+            }
+        }
+        return distances[cell] != UNREACHABLE;
+    }
+
+    public Position getSource() {
+        return source;
+    }
+
+    public boolean reached(int cell) {
+        return distances[cell] != UNREACHABLE;
+    }
+
+    public boolean reached(Position p) {
+        var cell = grid.indexOf(p);
+        return cell >= 0 && reached(cell);
+    }
+
+    public int distanceTo(int cell) {
+        return distances[cell];
+    }
+
+    // Return `UNREACHABLE` when the position was never reached
+    public int distanceTo(Position p) {
+        var cell = grid.indexOf(p);
+        return cell < 0 ? UNREACHABLE : distances[cell];
+    }
+
+    // Return `NO_PARENT` for the source and for cells that were never reached
+    public int parentOf(int cell) {
+        return parents[cell];
+    }
+
+    // Return `null` when the position was never reached
+    public List<Position> pathTo(Position p) {
+        var cell = grid.indexOf(p);
+        if (cell < 0 || !reached(cell)) {
+            return null;
+        }
+        return buildPath(grid, parents, cell, distances[cell] + 1);
+    }
+
+    static List<Position> buildPath(TileGrid grid, int[] parents, int dest, int length) {
+        var path = new Position[length];
+        var cell = dest;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = grid.positionAt(cell);
+            cell = parents[cell];
+        }
+        return Arrays.asList(path);
+    }
+
+    /*
+     * With unit edge weights, relaxing cells in increasing distance order only
+     * ever produces distances in increasing order too. So a sorted list of
+     * seeds merged with a plain FIFO of relaxations behaves like Dijkstra's
+     * priority queue.
+     */
+    private static class RepairQueue {
+        private int[] seedCells;
+        private int[] seedDistances;
+        private int seedCount;
+        private int seedHead;
+
+        private final int[] cells;
+        private final int[] cellDistances;
+        private int head;
+        private int tail;
+
+        RepairQueue(int cellCount) {
+            seedCells = new int[16];
+            seedDistances = new int[16];
+            // a cell is only pushed when its distance strictly drops, at most once per neighbor
+            cells = new int[cellCount * 4 + 1];
+            cellDistances = new int[cells.length];
+        }
+
+        void addSeed(int cell, int distance) {
+            if (seedCount == seedCells.length) {
+                seedCells = Arrays.copyOf(seedCells, seedCount * 2);
+                seedDistances = Arrays.copyOf(seedDistances, seedCount * 2);
+            }
+            seedCells[seedCount] = cell;
+            seedDistances[seedCount] = distance;
+            seedCount++;
+        }
+
+        void sortSeeds() {
+            var order = new Integer[seedCount];
+            for (int i = 0; i < seedCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> seedDistances[i]));
+
+            var sortedCells = new int[seedCount];
+            var sortedDistances = new int[seedCount];
+            for (int i = 0; i < seedCount; i++) {
+                sortedCells[i] = seedCells[order[i]];
+                sortedDistances[i] = seedDistances[order[i]];
+            }
+            seedCells = sortedCells;
+            seedDistances = sortedDistances;
+        }
+
+        void push(int cell, int distance) {
+            cells[tail] = cell;
+            cellDistances[tail] = distance;
+            tail++;
+        }
+
+        boolean isEmpty() {
+            return seedHead == seedCount && head == tail;
+        }
+
+        private boolean nextIsSeed() {
+            if (seedHead == seedCount) {
+                return false;
+            }
+            return head == tail || seedDistances[seedHead] <= cellDistances[head];
+        }
+
+        int peekDistance() {
+            return nextIsSeed() ? seedDistances[seedHead] : cellDistances[head];
+        }
+
+        int pop() {
+            return nextIsSeed() ? seedCells[seedHead++] : cells[head++];
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package codes.blitz.game.message.game;
+
+import java.util.*;
+
+/**
+ * Decides what to buy, following strategy.txt. The crew has two capacities,
+ * in blitzium per tick:
+ *
+ * - transport: every cart brings back a full load per round trip to the
+ *   miner it collects from, `MAX_CART_CARGO / (2 * distance)`;
+ * - production: every miner next to a mine mines one blitzium per tick.
+ *
+ * A miner is worth buying while the carts can carry more than what the
+ * miners will mine and a mine slot is left once the miners on their way have
+ * taken theirs, a cart while there is more mined than carried. A
+ * purchase is worth what it adds to the bottleneck capacity over the rest of
+ * the game, minus its walk from base and its price, and only the best one
+ * with a positive value is bought. Distances are measured on the bare map.
+ *
+ * Meant to live for the whole game and to be updated every tick. Only the
+ * units whose contribution changed are looked at again: a cart whose target
+ * is still at the same place, or a miner still next to a mine, keeps its
+ * share of the totals. The transport total is summed again from the carts'
+ * shares every tick, so that it doesn't drift from adding and removing them.
+ */
+public class EconomyPlanner {
+    private TileGrid grid;
+    private Position base;
+    private final Map<String, Position> cartTargets = new HashMap<>();
+    private final Map<String, Double> cartCapacities = new HashMap<>();
+    private final Set<String> producers = new HashSet<>();
+    private int minerCount;
+    private double transportCapacity;
+
+    public void update(World world, Crew crew, Map<Unit, List<Unit>> cartRoutes) {
+        if (grid == null || !grid.sameTilesAs(world.getGrid()) || !crew.getHomeBase().equals(base)) {
+            grid = world.getGrid();
+            base = crew.getHomeBase();
+            cartTargets.clear();
+            cartCapacities.clear();
+            producers.clear();
+        }
+
+        var miners = new ArrayList<Unit>();
+        var carts = new ArrayList<Unit>();
+        for (var unit: crew.getUnits()) {
+            if (unit.getType() == UnitType.MINER) {
+                miners.add(unit);
+            } else if (unit.getType() == UnitType.CART) {
+                carts.add(unit);
+            }
+        }
+
+        var minerIds = new HashSet<String>();
+        for (var miner: miners) {
+            minerIds.add(miner.getId());
+            var cell = grid.indexOf(miner.getPosition());
+            if (cell >= 0 && grid.isNextToType(cell, TileType.MINE)) {
+                producers.add(miner.getId());
+            } else {
+                producers.remove(miner.getId());
+            }
+        }
+        producers.retainAll(minerIds);
+        minerCount = miners.size();
+
+        var cartIds = new HashSet<String>();
+        for (var cart: carts) {
+            cartIds.add(cart.getId());
+            var route = cartRoutes.getOrDefault(cart, List.of());
+            // A cart with nothing to collect right now keeps its last target
+            var target = route.isEmpty() ? cartTargets.get(cart.getId()) : route.get(0).getPosition();
+            if (target == null) {
+                target = closestProducer(world, miners);
+            }
+            if (target == null) {
+                target = closestSlot(world);
+            }
+            if (Objects.equals(target, cartTargets.get(cart.getId())) && cartCapacities.containsKey(cart.getId())) {
+                continue;
+            }
+            cartCapacities.put(cart.getId(), target == null ? 0 : cartCapacity(world, target));
+            if (target != null) {
+                cartTargets.put(cart.getId(), target);
+            }
+        }
+        for (var id: new ArrayList<>(cartCapacities.keySet())) {
+            if (!cartIds.contains(id)) {
+                cartCapacities.remove(id);
+                cartTargets.remove(id);
+            }
+        }
+
+        transportCapacity = 0;
+        for (var capacity: cartCapacities.values()) {
+            transportCapacity += capacity;
+        }
+    }
+
+    public double getTransportCapacity() {
+        return transportCapacity;
+    }
+
+    public int getProductionCapacity() {
+        return producers.size();
+    }
+
+    /**
+     * The unit worth buying now, or null when nothing is worth its price or
+     * the crew has to save up for the best one.
+     */
+    public UnitType nextPurchase(World world, Crew crew) {
+        var gameMessage = world.getGameMessage();
+        var remainingTicks = gameMessage.getTotalTick() - gameMessage.getTick();
+        var prices = crew.getPrices();
+        var production = getProductionCapacity();
+
+        UnitType best = null;
+        var bestValue = 0.0;
+
+        // Miners still on their way will mine soon, and take a free slot
+        var onTheirWay = minerCount - production;
+        var freeSlot = closestFreeSlot(world, onTheirWay);
+        if (minerCount <= transportCapacity && freeSlot != DistanceField.UNREACHABLE) {
+            var value = (double) (remainingTicks - freeSlot) - prices.getMinerPrice();
+            if (value > bestValue) {
+                best = UnitType.MINER;
+                bestValue = value;
+            }
+        }
+
+        if (transportCapacity < production) {
+            var target = cartTargetToBuy(world, crew);
+            if (target != null) {
+                var walk = world.terrainDistance(base, target);
+                var capacity = Math.min(cartCapacity(world, target), production - transportCapacity);
+                var value = capacity * (remainingTicks - walk) - prices.getCartPrice();
+                if (value > bestValue) {
+                    best = UnitType.CART;
+                    bestValue = value;
+                }
+            }
+        }
+
+        if (best == null) {
+            return null;
+        }
+        var price = best == UnitType.MINER ? prices.getMinerPrice() : prices.getCartPrice();
+        return price <= crew.getBlitzium() ? best : null;
+    }
+
+    private double cartCapacity(World world, Position target) {
+        var distance = world.terrainDistance(base, target);
+        if (distance == DistanceField.UNREACHABLE) {
+            return 0;
+        }
+        return world.getGameMessage().getRules().getMaxCartCargo() / (2.0 * Math.max(1, distance));
+    }
+
+    // The closest producer no cart collects from yet, or the closest one when they all have a cart
+    private Position cartTargetToBuy(World world, Crew crew) {
+        var targeted = new HashSet<>(cartTargets.values());
+        Position closest = null;
+        Position closestFree = null;
+        var closestDistance = DistanceField.UNREACHABLE;
+        var closestFreeDistance = DistanceField.UNREACHABLE;
+        for (var unit: crew.getUnits()) {
+            if (!producers.contains(unit.getId())) {
+                continue;
+            }
+            var distance = world.terrainDistance(base, unit.getPosition());
+            if (distance < closestDistance) {
+                closest = unit.getPosition();
+                closestDistance = distance;
+            }
+            if (distance < closestFreeDistance && !targeted.contains(unit.getPosition())) {
+                closestFree = unit.getPosition();
+                closestFreeDistance = distance;
+            }
+        }
+        return closestFree != null ? closestFree : closest;
+    }
+
+    private Position closestProducer(World world, List<Unit> miners) {
+        return miners.stream()
+                .filter(miner -> producers.contains(miner.getId()))
+                .filter(miner -> world.terrainDistance(base, miner.getPosition()) != DistanceField.UNREACHABLE)
+                .min(Comparator.comparingInt((Unit miner) -> world.terrainDistance(base, miner.getPosition()))
+                        .thenComparing(Unit::getId))
+                .map(Unit::getPosition)
+                .orElse(null);
+    }
+
+    private Position closestSlot(World world) {
+        var slots = world.getMapIndex().getSlotsByBaseDistance();
+        if (slots.length == 0 || world.getMapIndex().baseDistance(slots[0]) == DistanceField.UNREACHABLE) {
+            return null;
+        }
+        return grid.positionAt(slots[0]);
+    }
+
+    // Walk from base to the closest mine slot left once `taken` more are, or UNREACHABLE
+    private int closestFreeSlot(World world, int taken) {
+        var index = world.getMapIndex();
+        for (var slot: index.getSlotsByBaseDistance()) {
+            if (world.isPassable(slot) && taken-- == 0) {
+                return index.baseDistance(slot);
+            }
+        }
+        return DistanceField.UNREACHABLE;
+    }
+}
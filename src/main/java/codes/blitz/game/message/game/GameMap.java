@@ -5,20 +5,43 @@ import codes.blitz.game.message.exception.PositionOutOfMapException;
 public class GameMap {
 	private String[][] tiles;
 	private Depot[] depots;
+	private transient TileGrid tileGrid;
 
 	public int getMapSize() {
-		return this.tiles.length;
+		return this.getTileGrid().getSize();
+	}
+
+	// Streaming decoders set the grid directly and never build the raw tiles
+	public TileGrid getTileGrid() {
+		if (tileGrid == null) {
+			tileGrid = TileGrid.fromRawTiles(tiles);
+		}
+		return tileGrid;
+	}
+
+	public void setTileGrid(TileGrid tileGrid) {
+		this.tileGrid = tileGrid;
+		this.tiles = null;
+	}
+
+	// Return `null` when the position is out of the map
+	public Position getPositionAt(int x, int y) {
+		return this.getTileGrid().positionAt(x, y);
 	}
 
 	public TileType getTileTypeAt(Position position)
 			throws PositionOutOfMapException {
-		String rawTile = this.getRawTileValueAt(position);
-		return TileType.getTileTypeFromString(rawTile);
+		this.validateTileExists(position);
+		var grid = this.getTileGrid();
+		return grid.getTileType(grid.indexOf(position.getX(), position.getY()));
 	}
 
 	public String getRawTileValueAt(Position position)
 			throws PositionOutOfMapException {
 		this.validateTileExists(position);
+		if (this.tiles == null) {
+			return this.getTileTypeAt(position).name();
+		}
 		return this.tiles[position.getX()][position.getY()];
 	}
 
@@ -26,6 +49,10 @@ public class GameMap {
 		return depots;
 	}
 
+	public void setDepots(Depot[] depots) {
+		this.depots = depots;
+	}
+
 	public void validateTileExists(Position position)
 			throws PositionOutOfMapException {
 		if (position.getX() < 0 || position.getY() < 0
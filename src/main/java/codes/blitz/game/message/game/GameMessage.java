@@ -11,29 +11,52 @@ public class GameMessage {
 	private String crewId;
 	private List<Crew> crews;
 	private GameMap map;
-	private Map<String, Crew> crewsMapById;
+	private transient Map<String, Crew> crewsMapById;
 	private Rules rules;
+	private transient long receivedAtNanos;
+	private transient long decodedAtNanos;
 
 	public int getTick() {
 		return tick;
 	}
 
+	public void setTick(int tick) {
+		this.tick = tick;
+	}
+
 	public int getTotalTick() {
 		return totalTick;
 	}
 
+	public void setTotalTick(int totalTick) {
+		this.totalTick = totalTick;
+	}
+
 	public String getCrewId() {
 		return crewId;
 	}
 
+	public void setCrewId(String crewId) {
+		this.crewId = crewId;
+	}
+
 	public List<Crew> getCrews() {
 		return crews;
 	}
 
+	public void setCrews(List<Crew> crews) {
+		this.crews = crews;
+		this.crewsMapById = null;
+	}
+
 	public GameMap getGameMap() {
 		return map;
 	}
 
+	public void setGameMap(GameMap map) {
+		this.map = map;
+	}
+
 	public Map<String, Crew> getCrewsMapById() {
 		if (crewsMapById == null) {
 			crewsMapById = crews.stream().collect(
@@ -45,4 +68,26 @@ public class GameMessage {
 	public Rules getRules() {
 		return rules;
 	}
+
+	public void setRules(Rules rules) {
+		this.rules = rules;
+	}
+
+	// System.nanoTime() when the frame was received, 0 when unknown
+	public long getReceivedAtNanos() {
+		return receivedAtNanos;
+	}
+
+	public void setReceivedAtNanos(long receivedAtNanos) {
+		this.receivedAtNanos = receivedAtNanos;
+	}
+
+	// System.nanoTime() when the frame was done decoding, 0 when unknown
+	public long getDecodedAtNanos() {
+		return decodedAtNanos;
+	}
+
+	public void setDecodedAtNanos(long decodedAtNanos) {
+		this.decodedAtNanos = decodedAtNanos;
+	}
 }
@@ -0,0 +1,214 @@
+package codes.blitz.game.message.game;
+
+import java.util.*;
+
+/**
+ * What never changes during a game, indexed once from the map and the home
+ * bases: the mines, the slots each of them can be worked from, every slot's
+ * walk from our base, the chokepoints of the walkable squares, and the
+ * squares no unit of ours can ever stand on.
+ *
+ * Mine slots are grouped by mine like {@link TileGrid}'s adjacency: iterate
+ * them with {@code for (int i = slotsStart(m); i < slotsEnd(m); i++)} and
+ * read each one with {@link #slotAt(int)}, where {@code m} is the mine's
+ * index in {@link #getMineCells()}.
+ *
+ * A chokepoint is an articulation point of the graph of empty squares: a
+ * square that, once blocked, cuts some walkable squares off from others.
+ * Single-width corridors are made of them.
+ *
+ * Our units can't enter the squares within 3 of an enemy base on both axes.
+ * Those, and everything that isn't an empty square, are kept as
+ * {@link CellBits} for {@link World} to add the units on top of.
+ *
+ * The arrays handed out are shared, never modify them.
+ */
+public class MapIndex {
+    private final int baseCell;
+    private final int[] baseDistances;
+    private final int[] mineCells;
+    private final int[] mineSlotOffsets;
+    private final int[] mineSlotCells;
+    private final int[] slotsByBaseDistance;
+    private final int[] chokepoints;
+    private final boolean[] isChokepoint;
+    private final long[] enemyZones;
+    private final long[] staticBlocked;
+
+    /**
+     * {@code baseDistances} are walks from the base on the bare map, as
+     * {@link World#terrainDistance} measures them.
+     */
+    MapIndex(TileGrid grid, int baseCell, int[] baseDistances, List<Position> enemyBases) {
+        this.baseCell = baseCell;
+        this.baseDistances = baseDistances;
+        this.mineCells = grid.getMineCells();
+
+        mineSlotOffsets = new int[mineCells.length + 1];
+        var slots = new int[mineCells.length * 4];
+        var count = 0;
+        for (int m = 0; m < mineCells.length; m++) {
+            mineSlotOffsets[m] = count;
+            var mine = mineCells[m];
+            for (int i = grid.adjacencyStart(mine); i < grid.adjacencyEnd(mine); i++) {
+                var neighbor = grid.adjacentCell(i);
+                if (grid.hasType(neighbor, TileType.EMPTY)) {
+                    slots[count++] = neighbor;
+                }
+            }
+        }
+        mineSlotOffsets[mineCells.length] = count;
+        mineSlotCells = Arrays.copyOf(slots, count);
+
+        slotsByBaseDistance = Arrays.stream(grid.getMineSlots())
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer slot) -> baseDistances[slot]).thenComparingInt(slot -> slot))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        isChokepoint = findArticulationPoints(grid);
+        var cuts = new ArrayList<Integer>();
+        for (int cell = 0; cell < isChokepoint.length; cell++) {
+            if (isChokepoint[cell]) {
+                cuts.add(cell);
+            }
+        }
+        chokepoints = cuts.stream().mapToInt(Integer::intValue).toArray();
+
+        enemyZones = CellBits.forCells(grid.getCellCount());
+        for (var enemyBase: enemyBases) {
+            for (int dx = -3; dx <= 3; dx++) {
+                for (int dy = -3; dy <= 3; dy++) {
+                    var x = enemyBase.getX() + dx;
+                    var y = enemyBase.getY() + dy;
+                    // near an edge, part of the zone is off the map
+                    if (grid.contains(x, y)) {
+                        CellBits.add(enemyZones, grid.indexOf(x, y));
+                    }
+                }
+            }
+        }
+        var walls = CellBits.forCells(grid.getCellCount());
+        for (int cell = 0; cell < grid.getCellCount(); cell++) {
+            if (!grid.hasType(cell, TileType.EMPTY)) {
+                CellBits.add(walls, cell);
+            }
+        }
+        staticBlocked = CellBits.union(walls, enemyZones);
+    }
+
+    public int getBaseCell() {
+        return baseCell;
+    }
+
+    // Walk from base on the bare map, or UNREACHABLE
+    public int baseDistance(int cell) {
+        return baseDistances[cell];
+    }
+
+    // Mine cells in index order, see TileGrid#getMineCells
+    public int[] getMineCells() {
+        return mineCells;
+    }
+
+    public int slotsStart(int mine) {
+        return mineSlotOffsets[mine];
+    }
+
+    public int slotsEnd(int mine) {
+        return mineSlotOffsets[mine + 1];
+    }
+
+    public int slotAt(int i) {
+        return mineSlotCells[i];
+    }
+
+    // Every mine slot, closest to base first, the unreachable ones last
+    public int[] getSlotsByBaseDistance() {
+        return slotsByBaseDistance;
+    }
+
+    // Chokepoints in index order
+    public int[] getChokepoints() {
+        return chokepoints;
+    }
+
+    public boolean isChokepoint(int cell) {
+        return cell >= 0 && isChokepoint[cell];
+    }
+
+    // Squares around the enemy bases
+    long[] getEnemyZones() {
+        return enemyZones;
+    }
+
+    // The enemy zones, and every square that isn't empty
+    long[] getStaticBlocked() {
+        return staticBlocked;
+    }
+
+    /*
+     * Tarjan's articulation points over the empty squares, with an explicit
+     * stack so that large open maps don't overflow the call stack. A square
+     * is a cut when it's the root of a search tree with several children, or
+     * when one of its children can't climb back above it.
+     */
+    private static boolean[] findArticulationPoints(TileGrid grid) {
+        var cellCount = grid.getCellCount();
+        var cut = new boolean[cellCount];
+        var discovery = new int[cellCount];
+        var low = new int[cellCount];
+        var parent = new int[cellCount];
+        // Next adjacency slot to look at, per cell on the stack
+        var nextEdge = new int[cellCount];
+        var stack = new int[cellCount];
+        Arrays.fill(discovery, -1);
+        var time = 0;
+
+        for (int root = 0; root < cellCount; root++) {
+            if (!grid.hasType(root, TileType.EMPTY) || discovery[root] >= 0) {
+                continue;
+            }
+
+            var rootChildren = 0;
+            var top = 0;
+            stack[top++] = root;
+            discovery[root] = low[root] = time++;
+            parent[root] = -1;
+            nextEdge[root] = grid.adjacencyStart(root);
+
+            while (top > 0) {
+                var cell = stack[top - 1];
+                if (nextEdge[cell] < grid.adjacencyEnd(cell)) {
+                    var neighbor = grid.adjacentCell(nextEdge[cell]++);
+                    if (!grid.hasType(neighbor, TileType.EMPTY)) {
+                        continue;
+                    }
+                    if (discovery[neighbor] < 0) {
+                        discovery[neighbor] = low[neighbor] = time++;
+                        parent[neighbor] = cell;
+                        nextEdge[neighbor] = grid.adjacencyStart(neighbor);
+                        stack[top++] = neighbor;
+                        if (cell == root) {
+                            rootChildren++;
+                        }
+                    } else if (neighbor != parent[cell]) {
+                        low[cell] = Math.min(low[cell], discovery[neighbor]);
+                    }
+                    continue;
+                }
+
+                top--;
+                var up = parent[cell];
+                if (up >= 0) {
+                    low[up] = Math.min(low[up], low[cell]);
+                    if (up != root && low[cell] >= discovery[up]) {
+                        cut[up] = true;
+                    }
+                }
+            }
+            cut[root] = rootChildren > 1;
+        }
+        return cut;
+    }
+}
@@ -0,0 +1,229 @@
+package codes.blitz.game.message.game;
+
+import java.util.*;
+
+/**
+ * Sends miners to mine slots (the empty squares next to a mine) so that the
+ * total walking distance is the smallest possible, with the Hungarian
+ * algorithm over a miner by slot matrix of distances read from the
+ * {@link World}'s distance fields.
+ *
+ * Meant to live for the whole game. Each solve starts from the previous
+ * tick's: a miner keeping its slot gets a small bonus so that ties don't make
+ * it change its mind every tick, the slots' dual prices are reused, and the
+ * previous pairs that are still optimal for those prices are kept as is, so
+ * only the miners whose situation changed are re-assigned.
+ */
+public class MineAssignment {
+    // In squares of walking, how much better another slot must be to leave the current one
+    public static final int STABILITY_BONUS = 1;
+
+    private static final long UNASSIGNED = 1_000_000;
+
+    private Map<String, Integer> previousSlots = new HashMap<>();
+    private Map<Integer, Long> slotPrices = new HashMap<>();
+
+    /**
+     * The slot each miner should head for. Miners that can't reach any free
+     * slot, or that are left over when there are more miners than slots, are
+     * missing from the result.
+     */
+    public Map<Unit, Position> assign(World world, List<Unit> miners) {
+        var grid = world.getGrid();
+        var sortedMiners = new ArrayList<>(miners);
+        sortedMiners.sort(Comparator.comparing(Unit::getId));
+
+        var fields = new DistanceField[sortedMiners.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = world.distanceFieldFrom(sortedMiners.get(i).getPosition());
+        }
+
+        // Free slots at least one of the miners can walk to
+        var slots = new ArrayList<Integer>();
+        for (var slot: grid.getMineSlots()) {
+            if (!world.isPassable(slot)) {
+                continue;
+            }
+            for (var field: fields) {
+                if (field.reached(slot)) {
+                    slots.add(slot);
+                    break;
+                }
+            }
+        }
+
+        var rows = sortedMiners.size();
+        if (rows == 0 || slots.isEmpty()) {
+            previousSlots = new HashMap<>();
+            return Map.of();
+        }
+
+        // More miners than slots: the extra columns stand for staying unassigned
+        var columns = Math.max(rows, slots.size());
+        var costs = new long[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            Arrays.fill(costs[i], UNASSIGNED);
+            var previousSlot = previousSlots.get(sortedMiners.get(i).getId());
+            for (int j = 0; j < slots.size(); j++) {
+                var slot = slots.get(j);
+                if (!fields[i].reached(slot)) {
+                    continue;
+                }
+                costs[i][j] = fields[i].distanceTo(slot);
+                if (slot.equals(previousSlot)) {
+                    costs[i][j] -= STABILITY_BONUS;
+                }
+            }
+        }
+
+        var columnPrices = new long[columns];
+        for (int j = 0; j < slots.size(); j++) {
+            columnPrices[j] = slotPrices.getOrDefault(slots.get(j), 0L);
+        }
+        var initialColumns = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            var previousSlot = previousSlots.get(sortedMiners.get(i).getId());
+            initialColumns[i] = previousSlot == null ? -1 : slots.indexOf(previousSlot);
+        }
+
+        var assignedColumns = solve(costs, columnPrices, initialColumns);
+
+        Map<Unit, Position> assignment = new HashMap<>();
+        Map<String, Integer> assignedSlots = new HashMap<>();
+        for (int i = 0; i < rows; i++) {
+            var j = assignedColumns[i];
+            if (j < slots.size() && costs[i][j] < UNASSIGNED) {
+                assignment.put(sortedMiners.get(i), grid.positionAt(slots.get(j)));
+                assignedSlots.put(sortedMiners.get(i).getId(), slots.get(j));
+            }
+        }
+
+        Map<Integer, Long> prices = new HashMap<>();
+        for (int j = 0; j < slots.size(); j++) {
+            prices.put(slots.get(j), columnPrices[j]);
+        }
+        previousSlots = assignedSlots;
+        slotPrices = prices;
+        return assignment;
+    }
+
+    /*
+     * Shortest augmenting path version of the Hungarian algorithm, for at most
+     * as many rows as columns. The result is optimal as long as every column
+     * price stays at most 0 and the columns left unmatched end at 0, so only
+     * the columns of the starting pairs keep their previous price, shifted
+     * down. Every row price is then its cheapest reduced cost, and a starting
+     * pair whose reduced cost is 0 can be kept, the augmentations never
+     * unmatch a column. Return the column of every row, and leave the final
+     * column prices in `columnPrices`.
+     */
+    static int[] solve(long[][] costs, long[] columnPrices, int[] initialColumns) {
+        var rows = costs.length;
+        var columns = costs[0].length;
+
+        // 1-based, column 0 is the virtual start of every augmenting path
+        var u = new long[rows + 1];
+        var v = new long[columns + 1];
+        var rowOfColumn = new int[columns + 1];
+        var way = new int[columns + 1];
+
+        for (int i = 1; i <= rows; i++) {
+            var j = initialColumns[i - 1] + 1;
+            if (j > 0 && rowOfColumn[j] == 0) {
+                rowOfColumn[j] = i;
+            }
+        }
+        var highestPrice = Long.MIN_VALUE;
+        for (int j = 1; j <= columns; j++) {
+            if (rowOfColumn[j] != 0) {
+                highestPrice = Math.max(highestPrice, columnPrices[j - 1]);
+            }
+        }
+        for (int j = 1; j <= columns; j++) {
+            v[j] = rowOfColumn[j] != 0 ? columnPrices[j - 1] - highestPrice : 0;
+        }
+
+        // Dropping a pair raises its column's price, which can loosen other pairs
+        var dropped = true;
+        while (dropped) {
+            dropped = false;
+            for (int i = 1; i <= rows; i++) {
+                var cheapest = Long.MAX_VALUE;
+                for (int j = 1; j <= columns; j++) {
+                    cheapest = Math.min(cheapest, costs[i - 1][j - 1] - v[j]);
+                }
+                u[i] = cheapest;
+            }
+            for (int j = 1; j <= columns; j++) {
+                var row = rowOfColumn[j];
+                if (row != 0 && costs[row - 1][j - 1] - u[row] - v[j] != 0) {
+                    rowOfColumn[j] = 0;
+                    v[j] = 0;
+                    dropped = true;
+                }
+            }
+        }
+
+        var matched = new boolean[rows + 1];
+        for (int j = 1; j <= columns; j++) {
+            matched[rowOfColumn[j]] = true;
+        }
+
+        var minSlack = new long[columns + 1];
+        var used = new boolean[columns + 1];
+        for (int i = 1; i <= rows; i++) {
+            if (matched[i]) {
+                continue;
+            }
+
+            rowOfColumn[0] = i;
+            var column = 0;
+            Arrays.fill(minSlack, Long.MAX_VALUE);
+            Arrays.fill(used, false);
+            do {
+                used[column] = true;
+                var row = rowOfColumn[column];
+                var delta = Long.MAX_VALUE;
+                var next = 0;
+                for (int j = 1; j <= columns; j++) {
+                    if (used[j]) {
+                        continue;
+                    }
+                    var slack = costs[row - 1][j - 1] - u[row] - v[j];
+                    if (slack < minSlack[j]) {
+                        minSlack[j] = slack;
+                        way[j] = column;
+                    }
+                    if (minSlack[j] < delta) {
+                        delta = minSlack[j];
+                        next = j;
+                    }
+                }
+                for (int j = 0; j <= columns; j++) {
+                    if (used[j]) {
+                        u[rowOfColumn[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minSlack[j] -= delta;
+                    }
+                }
+                column = next;
+            } while (rowOfColumn[column] != 0);
+
+            do {
+                var previous = way[column];
+                rowOfColumn[column] = rowOfColumn[previous];
+                column = previous;
+            } while (column != 0);
+        }
+
+        var columnOfRow = new int[rows];
+        for (int j = 1; j <= columns; j++) {
+            if (rowOfColumn[j] != 0) {
+                columnOfRow[rowOfColumn[j] - 1] = j - 1;
+            }
+            columnPrices[j - 1] = v[j];
+        }
+        return columnOfRow;
+    }
+}
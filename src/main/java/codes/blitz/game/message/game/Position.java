@@ -1,7 +1,5 @@
 package codes.blitz.game.message.game;
 
-import java.util.Objects;
-
 public class Position {
 	private int x, y;
 
@@ -40,7 +38,7 @@ public class Position {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(x, y);
+		return 31 * x + y;
 	}
 
 	public String toString() {
@@ -14,11 +14,23 @@ public class Prices {
 		return minerPrice;
 	}
 
+	public void setMinerPrice(int minerPrice) {
+		this.minerPrice = minerPrice;
+	}
+
 	public int getOutlawPrice() {
 		return outlawPrice;
 	}
 
+	public void setOutlawPrice(int outlawPrice) {
+		this.outlawPrice = outlawPrice;
+	}
+
 	public int getCartPrice() {
 		return cartPrice;
 	}
+
+	public void setCartPrice(int cartPrice) {
+		this.cartPrice = cartPrice;
+	}
 }
\ No newline at end of file
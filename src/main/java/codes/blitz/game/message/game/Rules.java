@@ -9,11 +9,23 @@ public class Rules {
 		return MAX_MINER_CARGO;
 	}
 
+	public void setMaxMinerCargo(int maxMinerCargo) {
+		this.MAX_MINER_CARGO = maxMinerCargo;
+	}
+
 	public int getMaxCartCargo() {
 		return MAX_CART_CARGO;
 	}
 
+	public void setMaxCartCargo(int maxCartCargo) {
+		this.MAX_CART_CARGO = maxCartCargo;
+	}
+
 	public int getMaxMinerMoveCargo() {
 		return MAX_MINER_MOVE_CARGO;
 	}
+
+	public void setMaxMinerMoveCargo(int maxMinerMoveCargo) {
+		this.MAX_MINER_MOVE_CARGO = maxMinerMoveCargo;
+	}
 }
@@ -0,0 +1,85 @@
+package codes.blitz.game.message.game;
+
+import java.util.*;
+
+/**
+ * What changed between two consecutive ticks: the units that moved (or
+ * appeared), the cells that became walkable or blocked, and whether any
+ * depot appeared, disappeared or changed amount.
+ */
+public class TerrainDiff {
+    private final List<Unit> movedUnits;
+    private final int[] changedCells;
+    private final boolean depotsChanged;
+
+    private TerrainDiff(List<Unit> movedUnits, int[] changedCells, boolean depotsChanged) {
+        this.movedUnits = movedUnits;
+        this.changedCells = changedCells;
+        this.depotsChanged = depotsChanged;
+    }
+
+    static TerrainDiff between(World previous, World current) {
+        var previousPositions = new HashMap<String, Position>();
+        for (var unit: previous.getAllUnits()) {
+            previousPositions.put(unit.getId(), unit.getPosition());
+        }
+
+        var movedUnits = new ArrayList<Unit>();
+        for (var unit: current.getAllUnits()) {
+            if (!unit.getPosition().equals(previousPositions.get(unit.getId()))) {
+                movedUnits.add(unit);
+            }
+        }
+
+        // Occupancy flipped wherever the two layers differ, 64 cells at a time
+        var grid = current.getGrid();
+        var before = previous.occupiedCells();
+        var after = current.occupiedCells();
+        var changed = new int[grid.getCellCount()];
+        var count = 0;
+        for (int word = 0; word < after.length; word++) {
+            var flipped = before[word] ^ after[word];
+            while (flipped != 0) {
+                var cell = (word << 6) + Long.numberOfTrailingZeros(flipped);
+                flipped &= flipped - 1;
+                if (grid.hasType(cell, TileType.EMPTY)) {
+                    changed[count++] = cell;
+                }
+            }
+        }
+        var changedCells = Arrays.copyOf(changed, count);
+
+        return new TerrainDiff(movedUnits, changedCells, depotsChanged(previous, current));
+    }
+
+    private static boolean depotsChanged(World previous, World current) {
+        var before = previous.getGameMessage().getGameMap().getDepots();
+        var after = current.getGameMessage().getGameMap().getDepots();
+        var beforeLength = before == null ? 0 : before.length;
+        var afterLength = after == null ? 0 : after.length;
+        if (beforeLength != afterLength) {
+            return true;
+        }
+
+        for (int i = 0; i < afterLength; i++) {
+            if (!before[i].getPosition().equals(after[i].getPosition())
+                    || before[i].getBlitzium() != after[i].getBlitzium()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<Unit> getMovedUnits() {
+        return movedUnits;
+    }
+
+    // Cells whose walkability flipped since the previous tick, in index order
+    public int[] getChangedCells() {
+        return changedCells;
+    }
+
+    public boolean depotsChanged() {
+        return depotsChanged;
+    }
+}
@@ -0,0 +1,46 @@
+package codes.blitz.game.message.game;
+
+/**
+ * Builds the {@link World} of every tick from the previous one. Walls and
+ * mines never move, so the distance fields computed last tick are carried
+ * over and only repaired around the cells that units left or entered.
+ * The field from our home base is kept for the whole game this way.
+ *
+ * Every World believes the other crews' announced paths for the same number
+ * of ticks, see {@link World#isPassableAt(int, int)}.
+ */
+public class TerrainEngine {
+    private final int pathTrust;
+    private World previous;
+
+    public TerrainEngine() {
+        this(World.DEFAULT_PATH_TRUST);
+    }
+
+    public TerrainEngine(int pathTrust) {
+        if (pathTrust < 0) {
+            throw new IllegalArgumentException("The path trust can't be negative, got " + pathTrust);
+        }
+        this.pathTrust = pathTrust;
+    }
+
+    public int getPathTrust() {
+        return pathTrust;
+    }
+
+    public World update(GameMessage gameMessage) {
+        var world = new World(gameMessage, previous, pathTrust);
+        // Keep the home field alive from tick to tick so that it only ever gets repaired
+        world.homeField();
+        previous = world;
+        return world;
+    }
+
+    public World getCurrentWorld() {
+        return previous;
+    }
+
+    public void reset() {
+        previous = null;
+    }
+}
@@ -0,0 +1,196 @@
+package codes.blitz.game.message.game;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The tiles of a {@link GameMap} packed in a single byte array, indexed by
+ * {@code y * size + x}. Queries by index never throw; positions outside the
+ * map simply don't have any tile type.
+ *
+ * The grid also owns one canonical {@link Position} per cell so that hot
+ * loops can hand out positions without allocating. Those instances are
+ * shared, never call their setters.
+ *
+ * The in-map neighbors of every cell are computed up front. Iterate them
+ * with {@code for (int i = adjacencyStart(cell); i < adjacencyEnd(cell); i++)}
+ * and read each one with {@link #adjacentCell(int)}. So are the mines and
+ * the empty cells next to them, where miners can work from.
+ */
+public class TileGrid {
+	private static final TileType[] TILE_TYPES = TileType.values();
+	private static final int[] DX = { -1, 0, 1, 0 };
+	private static final int[] DY = { 0, -1, 0, 1 };
+
+	private final int size;
+	private final byte[] tiles;
+	private final Position[] positions;
+	private final List<Position> allPositions;
+	private final int[] adjacencyOffsets;
+	private final int[] adjacency;
+	private final int[] mineCells;
+	private final int[] mineSlots;
+
+	public TileGrid(int size, byte[] tiles) {
+		if (tiles.length != size * size) {
+			throw new IllegalArgumentException(String.format(
+					"Expected %s tiles for a map of size %s, got %s.",
+					size * size, size, tiles.length));
+		}
+		this.size = size;
+		this.tiles = tiles;
+
+		this.positions = new Position[tiles.length];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = new Position(xOf(i), yOf(i));
+		}
+		this.allPositions = Collections.unmodifiableList(Arrays.asList(positions));
+
+		this.adjacencyOffsets = new int[tiles.length + 1];
+		var neighbors = new int[tiles.length * DX.length];
+		var count = 0;
+		for (int cell = 0; cell < tiles.length; cell++) {
+			adjacencyOffsets[cell] = count;
+			for (int i = 0; i < DX.length; i++) {
+				var x = xOf(cell) + DX[i];
+				var y = yOf(cell) + DY[i];
+				if (contains(x, y)) {
+					neighbors[count++] = indexOf(x, y);
+				}
+			}
+		}
+		adjacencyOffsets[tiles.length] = count;
+		this.adjacency = Arrays.copyOf(neighbors, count);
+
+		this.mineCells = IntStream.range(0, tiles.length)
+				.filter(cell -> hasType(cell, TileType.MINE))
+				.toArray();
+		this.mineSlots = IntStream.range(0, tiles.length)
+				.filter(cell -> hasType(cell, TileType.EMPTY) && isNextToType(cell, TileType.MINE))
+				.toArray();
+	}
+
+	public static TileGrid fromRawTiles(String[][] rawTiles) {
+		int size = rawTiles.length;
+		byte[] tiles = new byte[size * size];
+		for (int x = 0; x < size; x++) {
+			String[] column = rawTiles[x];
+			for (int y = 0; y < size; y++) {
+				tiles[y * size + x] = (byte) TileType
+						.getTileTypeFromString(column[y]).ordinal();
+			}
+		}
+		return new TileGrid(size, tiles);
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public boolean sameTilesAs(TileGrid other) {
+		return other == this
+				|| (other.size == size && Arrays.equals(other.tiles, tiles));
+	}
+
+	public int getCellCount() {
+		return tiles.length;
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && y >= 0 && x < size && y < size;
+	}
+
+	public boolean contains(Position position) {
+		return contains(position.getX(), position.getY());
+	}
+
+	// No bounds check, callers must make sure the cell is in the map
+	public int indexOf(int x, int y) {
+		return y * size + x;
+	}
+
+	// Return -1 when the position is out of the map
+	public int indexOf(Position position) {
+		if (!contains(position)) {
+			return -1;
+		}
+		return indexOf(position.getX(), position.getY());
+	}
+
+	public int xOf(int index) {
+		return index % size;
+	}
+
+	public int yOf(int index) {
+		return index / size;
+	}
+
+	public Position positionAt(int index) {
+		return positions[index];
+	}
+
+	// Return `null` when the position is out of the map
+	public Position positionAt(int x, int y) {
+		return contains(x, y) ? positions[indexOf(x, y)] : null;
+	}
+
+	// Every cell of the map, in index order
+	public List<Position> getAllPositions() {
+		return allPositions;
+	}
+
+	public int adjacencyStart(int index) {
+		return adjacencyOffsets[index];
+	}
+
+	public int adjacencyEnd(int index) {
+		return adjacencyOffsets[index + 1];
+	}
+
+	public int adjacentCell(int slot) {
+		return adjacency[slot];
+	}
+
+	public boolean isAdjacent(int a, int b) {
+		for (int i = adjacencyStart(a); i < adjacencyEnd(a); i++) {
+			if (adjacency[i] == b) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isNextToType(int index, TileType type) {
+		for (int i = adjacencyStart(index); i < adjacencyEnd(index); i++) {
+			if (hasType(adjacency[i], type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Mine cells in index order. Don't modify the returned array.
+	public int[] getMineCells() {
+		return mineCells;
+	}
+
+	// Empty cells next to at least one mine, in index order. Don't modify the returned array.
+	public int[] getMineSlots() {
+		return mineSlots;
+	}
+
+	public TileType getTileType(int index) {
+		return TILE_TYPES[tiles[index]];
+	}
+
+	public boolean hasType(int index, TileType type) {
+		return tiles[index] == type.ordinal();
+	}
+
+	public boolean hasType(Position position, TileType type) {
+		return contains(position)
+				&& hasType(indexOf(position.getX(), position.getY()), type);
+	}
+}
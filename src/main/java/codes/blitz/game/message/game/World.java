@@ -0,0 +1,412 @@
+package codes.blitz.game.message.game;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Everything about a tick that doesn't depend on which unit is asking: the
+ * units, the occupied squares and the distance fields computed so far. Build
+ * it once per {@link GameMessage} and hand it to every {@link Terrain}.
+ *
+ * Once built, a World can be queried from several threads at once.
+ */
+public class World {
+    // For how many ticks the other crews' announced paths are believed by default, see isPassableAt
+    public static final int DEFAULT_PATH_TRUST = 1;
+
+    private final GameMessage gameMessage;
+    private final TileGrid grid;
+    private final List<Unit> allUnits;
+    // Units and enemy base zones, then the same plus everything that isn't an empty square
+    private final long[] occupied;
+    private final long[] blocked;
+    // `blocked` without our units, as it will be 1..pathTrust ticks from now, then from pathTrust + 1 on
+    private final int pathTrust;
+    private final long[][] forecast;
+    private final Map<Position, DistanceField> distanceFields;
+    private final Map<Position, DistanceField> inheritedFields;
+    // Bare-map distances from the base and the mine slots, for the whole game, then from other squares for this tick
+    private final Map<Integer, int[]> terrainDistances;
+    private final Map<Integer, int[]> tickTerrainDistances = new ConcurrentHashMap<>();
+    private final MapIndex mapIndex;
+    private final TerrainDiff diff;
+
+    public World(GameMessage gameMessage) {
+        this(gameMessage, null, DEFAULT_PATH_TRUST);
+    }
+
+    // Reuse what can be reused from the previous tick, see TerrainEngine
+    World(GameMessage gameMessage, World previous, int pathTrust) {
+        this.gameMessage = gameMessage;
+        this.pathTrust = pathTrust;
+        this.grid = gameMessage.getGameMap().getTileGrid();
+
+        allUnits = new ArrayList<>();
+        for (var crew: gameMessage.getCrews()) {
+            allUnits.addAll(crew.getUnits());
+        }
+
+        var sameMap = previous != null && previous.grid.sameTilesAs(grid);
+        terrainDistances = sameMap ? previous.terrainDistances : new ConcurrentHashMap<>();
+
+        var baseCell = grid.indexOf(getHomeBase());
+        if (sameMap && previous.mapIndex.getBaseCell() == baseCell) {
+            mapIndex = previous.mapIndex;
+        } else {
+            var baseDistances = terrainDistances.computeIfAbsent(baseCell, this::terrainDistancesFrom);
+            mapIndex = new MapIndex(grid, baseCell, baseDistances, enemyBases());
+        }
+
+        // Only the units change from one tick to the next
+        var units = CellBits.forCells(grid.getCellCount());
+        for (var unit: allUnits) {
+            var cell = grid.indexOf(unit.getPosition());
+            if (cell >= 0) {
+                CellBits.add(units, cell);
+            }
+        }
+        occupied = CellBits.union(units, mapIndex.getEnemyZones());
+        blocked = CellBits.union(units, mapIndex.getStaticBlocked());
+        forecast = forecastBlocked();
+
+        distanceFields = new ConcurrentHashMap<>();
+
+        if (sameMap) {
+            diff = TerrainDiff.between(previous, this);
+            inheritedFields = new HashMap<>(previous.distanceFields);
+        } else {
+            diff = null;
+            inheritedFields = Collections.emptyMap();
+        }
+    }
+
+    /*
+     * Our units are left out, cart coordination reserves their squares tick
+     * by tick itself. The other crews' units follow the path the server
+     * announced for them, and a unit that announced none stays where it is.
+     * A move can fail, so a unit also keeps the square it leaves for one
+     * more tick.
+     *
+     * Past pathTrust ticks, a moving unit is left out: where it really goes
+     * depends on the units in its way, ours included. Trusting whole paths
+     * routed carts around enemies that never came, so by default only the
+     * next step is believed.
+     */
+    private long[][] forecastBlocked() {
+        var theirs = new ArrayList<Unit>();
+        for (var crew: gameMessage.getCrews()) {
+            if (!crew.getId().equals(gameMessage.getCrewId())) {
+                theirs.addAll(crew.getUnits());
+            }
+        }
+
+        var layers = new long[pathTrust + 1][];
+        for (int tick = 0; tick < layers.length; tick++) {
+            layers[tick] = mapIndex.getStaticBlocked().clone();
+        }
+        for (var unit: theirs) {
+            var path = announcedPath(unit);
+            var previous = grid.indexOf(unit.getPosition());
+            if (path.isEmpty()) {
+                for (var layer: layers) {
+                    if (previous >= 0) {
+                        CellBits.add(layer, previous);
+                    }
+                }
+                continue;
+            }
+            for (int tick = 0; tick < pathTrust; tick++) {
+                var cell = tick < path.size() ? grid.indexOf(path.get(tick)) : previous;
+                if (cell >= 0) {
+                    CellBits.add(layers[tick], cell);
+                }
+                if (previous >= 0) {
+                    CellBits.add(layers[tick], previous);
+                }
+                previous = cell;
+            }
+        }
+        return layers;
+    }
+
+    // Where the unit will be on each of the next ticks, without its current square
+    private static List<Position> announcedPath(Unit unit) {
+        var path = unit.getPath();
+        if (path == null || path.isEmpty()) {
+            return List.of();
+        }
+        return path.get(0).equals(unit.getPosition()) ? path.subList(1, path.size()) : path;
+    }
+
+    private List<Position> enemyBases() {
+        var enemyBases = new ArrayList<Position>();
+        for (var crew: gameMessage.getCrews()) {
+            // don't eliminate our own home base
+            if (!crew.getId().equals(gameMessage.getCrewId())) {
+                enemyBases.add(crew.getHomeBase());
+            }
+        }
+        return enemyBases;
+    }
+
+    public GameMessage getGameMessage() {
+        return gameMessage;
+    }
+
+    public TileGrid getGrid() {
+        return grid;
+    }
+
+    public List<Unit> getAllUnits() {
+        return allUnits;
+    }
+
+    // For how many ticks the other crews' announced paths are believed
+    public int getPathTrust() {
+        return pathTrust;
+    }
+
+    // Built with the first world of the game, then shared by the next ones
+    public MapIndex getMapIndex() {
+        return mapIndex;
+    }
+
+    // Return `null` on the first tick, or when the map itself changed
+    public TerrainDiff getDiff() {
+        return diff;
+    }
+
+    // See CellBits, never modify the returned array
+    long[] occupiedCells() {
+        return occupied;
+    }
+
+    public boolean isOccupied(Position p) {
+        var cell = grid.indexOf(p);
+        return cell >= 0 && CellBits.contains(occupied, cell);
+    }
+
+    // Units can only walk through empty squares that nobody stands on
+    public boolean isPassable(Position p) {
+        var cell = grid.indexOf(p);
+        return cell >= 0 && isPassable(cell);
+    }
+
+    public boolean isPassable(int cell) {
+        return !CellBits.contains(blocked, cell);
+    }
+
+    /**
+     * Whether a unit of ours could stand on {@code cell} {@code ticksAhead}
+     * ticks from now, as far as the map and the other crews' announced paths
+     * tell. Past {@link #getPathTrust()} ticks, only their units standing still
+     * are in the way. Our own units aren't: {@link CooperativePathfinder}
+     * reserves their squares for the ticks they hold them.
+     */
+    public boolean isPassableAt(int cell, int ticksAhead) {
+        if (ticksAhead <= 0) {
+            return isPassable(cell);
+        }
+        return !CellBits.contains(forecast[Math.min(ticksAhead, forecast.length) - 1], cell);
+    }
+
+    // Distance fields are computed on first use and shared for the rest of the tick.
+    // A field from the same source last tick is patched instead of rebuilt.
+    public DistanceField distanceFieldFrom(Position source) {
+        return distanceFields.computeIfAbsent(source, s -> {
+            var inherited = inheritedFields.get(s);
+            if (inherited != null) {
+                return inherited.repair(this, diff.getChangedCells());
+            }
+            return new DistanceField(this, s);
+        });
+    }
+
+    public Position getHomeBase() {
+        return gameMessage.getCrewsMapById().get(gameMessage.getCrewId()).getHomeBase();
+    }
+
+    /**
+     * Distances from our home base. Moves go both ways, so this is also how
+     * far every square is from home, and the predecessor of a square is its
+     * next step home. {@link TerrainEngine} asks for it every tick, so it is
+     * only computed once per game and then repaired like any other field.
+     */
+    public DistanceField homeField() {
+        return distanceFieldFrom(getHomeBase());
+    }
+
+    public int distanceToBase(Position p) {
+        return homeField().distanceTo(p);
+    }
+
+    // Return the base itself next to it, and `null` when there is no way home
+    public Position nextStepToBase(Position p) {
+        var cell = grid.indexOf(p);
+        if (cell < 0) {
+            return null;
+        }
+        var parent = homeField().parentOf(cell);
+        return parent == DistanceField.NO_PARENT ? null : grid.positionAt(parent);
+    }
+
+    /**
+     * Walking distance on the bare map, as if nobody stood anywhere, or
+     * {@link DistanceField#UNREACHABLE}. Blocked squares next to the walkable
+     * area are reached too, like in a {@link DistanceField}. Meant for plans
+     * that outlive the current positions of the units.
+     *
+     * Distances are the same both ways, so they are measured from the end
+     * that is our base or a mine slot when there is one: those are kept for
+     * as long as the map doesn't change. Distances between two other squares,
+     * where units happen to stand, are only kept for this tick.
+     */
+    public int terrainDistance(Position from, Position to) {
+        var fromCell = grid.indexOf(from);
+        var toCell = grid.indexOf(to);
+        if (fromCell < 0 || toCell < 0) {
+            return DistanceField.UNREACHABLE;
+        }
+        if (isLandmark(fromCell)) {
+            return terrainDistances.computeIfAbsent(fromCell, this::terrainDistancesFrom)[toCell];
+        }
+        if (isLandmark(toCell)) {
+            return terrainDistances.computeIfAbsent(toCell, this::terrainDistancesFrom)[fromCell];
+        }
+        return tickTerrainDistances.computeIfAbsent(fromCell, this::terrainDistancesFrom)[toCell];
+    }
+
+    // The squares there are only ever so many of: our base and the mine slots
+    private boolean isLandmark(int cell) {
+        return cell == mapIndex.getBaseCell()
+                || (grid.hasType(cell, TileType.EMPTY) && grid.isNextToType(cell, TileType.MINE));
+    }
+
+    private int[] terrainDistancesFrom(int source) {
+        var distances = new int[grid.getCellCount()];
+        Arrays.fill(distances, DistanceField.UNREACHABLE);
+        var queue = new int[grid.getCellCount()];
+        var head = 0;
+        var tail = 0;
+        distances[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            var cell = queue[head++];
+            for (int i = grid.adjacencyStart(cell); i < grid.adjacencyEnd(cell); i++) {
+                var neighbor = grid.adjacentCell(i);
+                if (distances[neighbor] == DistanceField.UNREACHABLE) {
+                    distances[neighbor] = distances[cell] + 1;
+                    if (grid.hasType(neighbor, TileType.EMPTY)) {
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+
+    public List<Position> neighbors(Position p) {
+        var cell = grid.indexOf(p);
+        if (cell < 0) {
+            return Collections.emptyList();
+        }
+
+        var end = grid.adjacencyEnd(cell);
+        var reachablePositions = new ArrayList<Position>(end - grid.adjacencyStart(cell));
+        for (int i = grid.adjacencyStart(cell); i < end; i++) {
+            reachablePositions.add(grid.positionAt(grid.adjacentCell(i)));
+        }
+
+        return reachablePositions;
+    }
+
+    public List<Position> getAllPositions() {
+        return grid.getAllPositions();
+    }
+
+    /**
+     * Every square next to a mine that {@code fromPosition} can reach and
+     * that nobody stands on, whatever its type, like Terrain always listed
+     * them. Mines are taken in index order.
+     */
+    public List<Position> getMineablePositions(Position fromPosition) {
+        return getMineablePositions(fromPosition, mine -> true);
+    }
+
+    // Same, around the mines `mineFilter` accepts only
+    List<Position> getMineablePositions(Position fromPosition, IntPredicate mineFilter) {
+        var field = distanceFieldFrom(fromPosition);
+        var listed = new boolean[grid.getCellCount()];
+        var positions = new ArrayList<Position>();
+        for (var mine: mapIndex.getMineCells()) {
+            if (!mineFilter.test(mine)) {
+                continue;
+            }
+            for (int i = grid.adjacencyStart(mine); i < grid.adjacencyEnd(mine); i++) {
+                var neighbor = grid.adjacentCell(i);
+                if (!listed[neighbor] && field.reached(neighbor) && !CellBits.contains(occupied, neighbor)) {
+                    listed[neighbor] = true;
+                    positions.add(grid.positionAt(neighbor));
+                }
+            }
+        }
+        return positions;
+    }
+
+    // Return `null` when there is no viable path
+    public List<Position> pathTo(Position start, Position dest, Set<Position> restrictedPositions) {
+        var startCell = grid.indexOf(start);
+        var destCell = grid.indexOf(dest);
+        if (startCell < 0 || destCell < 0) {
+            return null;
+        }
+
+        var cellCount = grid.getCellCount();
+        var restricted = new boolean[cellCount];
+        for (var position: restrictedPositions) {
+            var cell = grid.indexOf(position);
+            if (cell >= 0) {
+                restricted[cell] = true;
+            }
+        }
+
+        var distances = new int[cellCount];
+        var parents = new int[cellCount];
+        Arrays.fill(distances, DistanceField.UNREACHABLE);
+        Arrays.fill(parents, DistanceField.NO_PARENT);
+
+        var queue = new int[cellCount];
+        var head = 0;
+        var tail = 0;
+        distances[startCell] = 0;
+        queue[tail++] = startCell;
+
+        while (head < tail) {
+            var cell = queue[head++];
+            var end = grid.adjacencyEnd(cell);
+
+            for (int i = grid.adjacencyStart(cell); i < end; i++) {
+                var neighbor = grid.adjacentCell(i);
+                if (neighbor == destCell) {
+                    parents[destCell] = cell;
+                    return DistanceField.buildPath(grid, parents, destCell, distances[cell] + 2);
+                }
+
+                if (distances[neighbor] == DistanceField.UNREACHABLE) {
+                    distances[neighbor] = distances[cell] + 1;
+                    parents[neighbor] = cell;
+                    if (isPassable(neighbor) && !restricted[neighbor]) {
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    public boolean positionHasType(Position p, TileType t) {
+        return grid.hasType(p, t);
+    }
+}
@@ -0,0 +1,115 @@
+package codes.blitz.game.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, in the spirit of
+ * HdrHistogram: every power of two is split into {@link #SUB_BUCKETS} linear
+ * buckets, so any value is known within about 3% whatever its magnitude, in
+ * a fixed array of counters. Recording is a couple of shifts and one atomic
+ * increment, from any thread.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Counts at this moment. Ticks recorded while the snapshot is taken may or
+	 * may not be part of it.
+	 */
+	public Snapshot snapshot() {
+		long[] snapshotCounts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshotCounts[i] = counts.get(i);
+		}
+		return new Snapshot(snapshotCounts, max.get());
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int group = exponent - SUB_BUCKET_BITS + 1;
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return group * SUB_BUCKETS + subBucket;
+	}
+
+	// Largest value that falls in the bucket
+	static long highestValueIn(int bucket) {
+		int group = bucket / SUB_BUCKETS;
+		int subBucket = bucket % SUB_BUCKETS;
+		if (group == 0) {
+			return subBucket;
+		}
+		long lowest = (long) (SUB_BUCKETS + subBucket) << (group - 1);
+		return lowest + (1L << (group - 1)) - 1;
+	}
+
+	public static class Snapshot {
+		private final long[] counts;
+		private final long max;
+		private final long total;
+
+		Snapshot(long[] counts, long max) {
+			this.counts = counts;
+			this.max = max;
+			long sum = 0;
+			for (long count : counts) {
+				sum += count;
+			}
+			this.total = sum;
+		}
+
+		/**
+		 * What was recorded between {@code earlier} and this snapshot. The
+		 * maximum is the highest bucket's, the exact one is only kept overall.
+		 */
+		public Snapshot since(Snapshot earlier) {
+			long[] difference = new long[counts.length];
+			long highest = 0;
+			for (int i = 0; i < counts.length; i++) {
+				difference[i] = counts[i] - earlier.counts[i];
+				if (difference[i] > 0) {
+					highest = Math.min(highestValueIn(i), max);
+				}
+			}
+			return new Snapshot(difference, highest);
+		}
+
+		public long getTotalCount() {
+			return total;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		// Return 0 when nothing was recorded
+		public long percentile(double fraction) {
+			if (total == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(fraction * total));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(highestValueIn(i), max);
+				}
+			}
+			return max;
+		}
+	}
+}
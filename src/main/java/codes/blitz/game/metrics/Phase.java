@@ -0,0 +1,17 @@
+package codes.blitz.game.metrics;
+
+/**
+ * Steps of a tick, in the order they happen.
+ */
+public enum Phase {
+	// From the end of decoding to the decision starting, the wait for the decision thread in pipelined mode
+	RECEIVE,
+	DECODE,
+	TERRAIN,
+	UNIT_LOGIC,
+	CART_COORDINATION,
+	BUY,
+	ENCODE,
+	// Until the frame is handed to the socket, or until the async send completes
+	SEND
+}
@@ -0,0 +1,169 @@
+package codes.blitz.game.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import codes.blitz.game.logging.AsyncLogger;
+
+/**
+ * Where the time of every tick goes, one {@link LatencyHistogram} per
+ * {@link Phase} plus one for whole ticks, from the frame reaching the decoder
+ * to the answer being sent.
+ *
+ * There is a single instance per process, since the decoder and encoder are
+ * created by the WebSocket container. Recording never blocks.
+ */
+public class TickMetrics implements TickMetricsMXBean {
+	public static final String OBJECT_NAME = "codes.blitz.game:type=TickMetrics";
+	private static final String TICK = "TICK";
+
+	private static final TickMetrics INSTANCE = new TickMetrics();
+
+	private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+	private final LatencyHistogram ticks = new LatencyHistogram();
+	private final LongAdder deadlineMisses = new LongAdder();
+
+	// What the last periodic summary covered
+	private Map<String, LatencyHistogram.Snapshot> reported = new LinkedHashMap<>();
+	private long reportedMisses;
+
+	private TickMetrics() {
+		for (Phase phase : Phase.values()) {
+			phases.put(phase, new LatencyHistogram());
+		}
+	}
+
+	public static TickMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	public void record(Phase phase, long nanos) {
+		phases.get(phase).record(nanos);
+	}
+
+	public void tickCompleted(long nanos, boolean missedDeadline) {
+		ticks.record(nanos);
+		if (missedDeadline) {
+			deadlineMisses.increment();
+		}
+	}
+
+	/**
+	 * Print a summary of the ticks played since the previous one every
+	 * {@code intervalSeconds}, skipped when no tick was played.
+	 */
+	public void startReporting(long intervalSeconds) {
+		ScheduledExecutorService reporter = Executors
+				.newSingleThreadScheduledExecutor(runnable -> {
+					Thread thread = new Thread(runnable, "tick-metrics");
+					thread.setDaemon(true);
+					return thread;
+				});
+		reporter.scheduleAtFixedRate(() -> {
+			String summary = intervalSummary();
+			if (summary != null) {
+				AsyncLogger.getInstance().info(summary);
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	public void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			AsyncLogger.getInstance().warn("Could not register tick metrics: ", e);
+		}
+	}
+
+	// Return `null` when no tick was played since the previous summary
+	public synchronized String intervalSummary() {
+		Map<String, LatencyHistogram.Snapshot> current = snapshots();
+		long misses = deadlineMisses.sum();
+		Map<String, LatencyHistogram.Snapshot> interval = new LinkedHashMap<>();
+		current.forEach((name, snapshot) -> interval.put(name,
+				reported.containsKey(name) ? snapshot.since(reported.get(name)) : snapshot));
+		long intervalMisses = misses - reportedMisses;
+		reported = current;
+		reportedMisses = misses;
+
+		if (interval.get(TICK).getTotalCount() == 0) {
+			return null;
+		}
+		return format(interval, intervalMisses);
+	}
+
+	@Override
+	public String getSummary() {
+		return format(snapshots(), deadlineMisses.sum());
+	}
+
+	@Override
+	public long getTicks() {
+		return ticks.snapshot().getTotalCount();
+	}
+
+	@Override
+	public long getDeadlineMisses() {
+		return deadlineMisses.sum();
+	}
+
+	@Override
+	public Map<String, Double> getP50Millis() {
+		return millisOf(snapshot -> snapshot.percentile(0.50));
+	}
+
+	@Override
+	public Map<String, Double> getP99Millis() {
+		return millisOf(snapshot -> snapshot.percentile(0.99));
+	}
+
+	@Override
+	public Map<String, Double> getMaxMillis() {
+		return millisOf(LatencyHistogram.Snapshot::getMax);
+	}
+
+	private Map<String, LatencyHistogram.Snapshot> snapshots() {
+		Map<String, LatencyHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+		snapshots.put(TICK, ticks.snapshot());
+		phases.forEach((phase, histogram) -> snapshots.put(phase.name(), histogram.snapshot()));
+		return snapshots;
+	}
+
+	private Map<String, Double> millisOf(ToLongFunction<LatencyHistogram.Snapshot> statistic) {
+		Map<String, Double> millis = new LinkedHashMap<>();
+		snapshots().forEach((name, snapshot) ->
+				millis.put(name, millis(statistic.applyAsLong(snapshot))));
+		return millis;
+	}
+
+	// `TICK n, m missed | p50/p99/max ms per phase`
+	private static String format(Map<String, LatencyHistogram.Snapshot> snapshots, long misses) {
+		StringBuilder line = new StringBuilder();
+		line.append(String.format("%s %d, %d missed |", TICK,
+				snapshots.get(TICK).getTotalCount(), misses));
+		snapshots.forEach((name, snapshot) -> line.append(String.format(
+				" %s %.2f/%.2f/%.2f", name.toLowerCase(),
+				millis(snapshot.percentile(0.50)),
+				millis(snapshot.percentile(0.99)), millis(snapshot.getMax()))));
+		return line.append(" ms").toString();
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+}
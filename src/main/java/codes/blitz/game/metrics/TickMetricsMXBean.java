@@ -0,0 +1,22 @@
+package codes.blitz.game.metrics;
+
+import java.util.Map;
+
+/**
+ * What {@link TickMetrics} exposes over JMX, under {@link TickMetrics#OBJECT_NAME}.
+ * Durations are in milliseconds, over the whole game, keyed by phase name and
+ * `TICK` for whole ticks.
+ */
+public interface TickMetricsMXBean {
+	long getTicks();
+
+	long getDeadlineMisses();
+
+	Map<String, Double> getP50Millis();
+
+	Map<String, Double> getP99Millis();
+
+	Map<String, Double> getMaxMillis();
+
+	String getSummary();
+}
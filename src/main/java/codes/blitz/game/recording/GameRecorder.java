@@ -0,0 +1,339 @@
+package codes.blitz.game.recording;
+
+import static codes.blitz.game.recording.RecordFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import codes.blitz.game.message.bot.BotMessage;
+import codes.blitz.game.message.game.Action;
+import codes.blitz.game.message.game.BuyAction;
+import codes.blitz.game.message.game.Crew;
+import codes.blitz.game.message.game.Depot;
+import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.message.game.Position;
+import codes.blitz.game.message.game.Prices;
+import codes.blitz.game.message.game.Rules;
+import codes.blitz.game.message.game.TileGrid;
+import codes.blitz.game.message.game.Unit;
+import codes.blitz.game.message.game.UnitAction;
+
+/**
+ * Appends every tick received and every command sent to a compact binary log,
+ * see {@link RecordFormat}. Read it back with {@link ReplayReader}.
+ *
+ * Records are buffered, they are only guaranteed to be on disk once the
+ * recorder is flushed or closed. Safe to call from the I/O thread and the
+ * decision thread at the same time.
+ */
+public class GameRecorder implements Closeable {
+	private final OutputStream out;
+	private final RecordBuffer record = new RecordBuffer();
+	private final Map<String, Integer> strings = new HashMap<>();
+
+	private TileGrid grid;
+	private int totalTick = -1;
+	private String crewId;
+	private int[] rules;
+	private final Map<String, Object[]> crewInfo = new HashMap<>();
+	// type, x, y, blitzium of every unit in the previous tick
+	private Map<String, int[]> previousUnits = new HashMap<>();
+	private Map<String, List<Position>> previousPaths = new HashMap<>();
+
+	public GameRecorder(Path file) throws IOException {
+		this(Files.newOutputStream(file));
+	}
+
+	public GameRecorder(OutputStream out) throws IOException {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		record.writeLong(MAGIC);
+		record.writeInt(VERSION);
+		this.out.write(record.bytes, 0, record.length);
+		record.length = 0;
+	}
+
+	public synchronized void recordTick(GameMessage message) throws IOException {
+		if (message.getTotalTick() != totalTick
+				|| !Objects.equals(message.getCrewId(), crewId)) {
+			totalTick = message.getTotalTick();
+			crewId = message.getCrewId();
+			begin(GAME);
+			record.writeInt(totalTick);
+			writeString(crewId);
+			end();
+		}
+
+		if (message.getGameMap() != null) {
+			TileGrid messageGrid = message.getGameMap().getTileGrid();
+			if (grid == null || (messageGrid != grid && !messageGrid.sameTilesAs(grid))) {
+				writeMap(messageGrid);
+			}
+			grid = messageGrid;
+		}
+
+		Rules messageRules = message.getRules();
+		if (messageRules != null) {
+			int[] values = { messageRules.getMaxMinerCargo(),
+					messageRules.getMaxCartCargo(),
+					messageRules.getMaxMinerMoveCargo() };
+			if (!Arrays.equals(values, rules)) {
+				rules = values;
+				begin(RULES);
+				for (int value : values) {
+					record.writeInt(value);
+				}
+				end();
+			}
+		}
+
+		for (Crew crew : message.getCrews()) {
+			writeCrewIfChanged(crew);
+		}
+
+		begin(TICK);
+		record.writeInt(message.getTick());
+		Depot[] depots = message.getGameMap() != null
+				? message.getGameMap().getDepots() : null;
+		record.writeInt(depots == null ? 0 : depots.length);
+		if (depots != null) {
+			for (Depot depot : depots) {
+				writePosition(depot.getPosition());
+				record.writeInt(depot.getBlitzium());
+			}
+		}
+
+		Map<String, int[]> units = new HashMap<>();
+		Map<String, List<Position>> paths = new HashMap<>();
+		record.writeInt(message.getCrews().size());
+		for (Crew crew : message.getCrews()) {
+			writeString(crew.getId());
+			record.writeInt(crew.getBlitzium());
+			record.writeInt(crew.getTotalBlitzium());
+			List<String> errors = crew.getErrors();
+			record.writeInt(errors == null ? 0 : errors.size());
+			if (errors != null) {
+				errors.forEach(this::writeString);
+			}
+
+			List<Unit> crewUnits = crew.getUnits();
+			record.writeInt(crewUnits == null ? 0 : crewUnits.size());
+			if (crewUnits != null) {
+				for (Unit unit : crewUnits) {
+					units.put(unit.getId(), writeUnit(unit));
+					paths.put(unit.getId(), unit.getPath());
+				}
+			}
+		}
+		end();
+		previousUnits = units;
+		previousPaths = paths;
+	}
+
+	public synchronized void recordCommand(BotMessage message) throws IOException {
+		begin(COMMAND);
+		record.writeInt(message.getTick() == null ? 0 : 1);
+		if (message.getTick() != null) {
+			record.writeInt(message.getTick());
+		}
+
+		List<Action> actions = message.getActions();
+		record.writeInt(actions == null ? 0 : actions.size());
+		if (actions != null) {
+			for (Action action : actions) {
+				if (action instanceof BuyAction) {
+					record.writeInt(BUY_ACTION);
+					record.writeInt(((BuyAction) action).getUnitType().ordinal());
+				} else {
+					UnitAction unitAction = (UnitAction) action;
+					record.writeInt(UNIT_ACTION + unitAction.getAction().ordinal());
+					writeString(unitAction.getUnitId());
+					record.writeInt(unitAction.getTarget() == null ? 0 : 1);
+					if (unitAction.getTarget() != null) {
+						writePosition(unitAction.getTarget());
+					}
+				}
+			}
+		}
+		end();
+	}
+
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	private void writeMap(TileGrid messageGrid) throws IOException {
+		begin(MAP);
+		record.writeInt(messageGrid.getSize());
+		for (int cell = 0; cell < messageGrid.getCellCount(); cell++) {
+			record.writeByte(messageGrid.getTileType(cell).ordinal());
+		}
+		end();
+	}
+
+	private void writeCrewIfChanged(Crew crew) throws IOException {
+		Prices prices = crew.getPrices();
+		Object[] info = { crew.getName(), crew.getHomeBase(),
+				prices == null ? null : Arrays.asList(prices.getMinerPrice(),
+						prices.getOutlawPrice(), prices.getCartPrice()) };
+		if (Arrays.equals(info, crewInfo.get(crew.getId()))) {
+			return;
+		}
+		crewInfo.put(crew.getId(), info);
+
+		begin(CREW);
+		writeString(crew.getId());
+		writeString(crew.getName());
+		writePosition(crew.getHomeBase());
+		record.writeInt(prices == null ? 0 : 1);
+		if (prices != null) {
+			record.writeInt(prices.getMinerPrice());
+			record.writeInt(prices.getOutlawPrice());
+			record.writeInt(prices.getCartPrice());
+		}
+		end();
+	}
+
+	private int[] writeUnit(Unit unit) {
+		Position position = unit.getPosition();
+		int[] state = { unit.getType() == null ? -1 : unit.getType().ordinal(),
+				position == null ? -1 : position.getX(),
+				position == null ? -1 : position.getY(), unit.getBlitzium() };
+		int[] previous = previousUnits.get(unit.getId());
+
+		int flags = 0;
+		if (previous == null || previous[0] != state[0]) {
+			flags |= UNIT_TYPE;
+		}
+		if (previous == null || previous[1] != state[1] || previous[2] != state[2]) {
+			flags |= UNIT_POSITION;
+		}
+		if (previous == null || previous[3] != state[3]) {
+			flags |= UNIT_BLITZIUM;
+		}
+		List<Position> path = unit.getPath();
+		if (previous == null || !Objects.equals(path, previousPaths.get(unit.getId()))) {
+			flags |= UNIT_PATH;
+		}
+
+		writeString(unit.getId());
+		record.writeInt(flags);
+		if ((flags & UNIT_TYPE) != 0) {
+			record.writeInt(state[0]);
+		}
+		if ((flags & UNIT_POSITION) != 0) {
+			record.writeInt(state[1]);
+			record.writeInt(state[2]);
+		}
+		if ((flags & UNIT_BLITZIUM) != 0) {
+			record.writeInt(state[3]);
+		}
+		if ((flags & UNIT_PATH) != 0) {
+			writePath(path, position);
+		}
+		return state;
+	}
+
+	// Steps are next to each other, so their offsets fit in a byte each
+	private void writePath(List<Position> path, Position from) {
+		record.writeInt(path == null ? -1 : path.size());
+		if (path == null) {
+			return;
+		}
+		int x = from == null ? 0 : from.getX();
+		int y = from == null ? 0 : from.getY();
+		for (Position step : path) {
+			record.writeInt(step.getX() - x);
+			record.writeInt(step.getY() - y);
+			x = step.getX();
+			y = step.getY();
+		}
+	}
+
+	// Positions are always there except for a crew without a home base
+	private void writePosition(Position position) {
+		record.writeInt(position == null ? -1 : position.getX());
+		record.writeInt(position == null ? -1 : position.getY());
+	}
+
+	private void writeString(String string) {
+		if (string == null) {
+			record.writeInt(0);
+			return;
+		}
+
+		Integer reference = strings.get(string);
+		if (reference != null) {
+			record.writeInt(reference);
+			return;
+		}
+		reference = strings.size() + 1;
+		strings.put(string, reference);
+		record.writeInt(reference);
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		record.writeInt(bytes.length);
+		record.writeBytes(bytes);
+	}
+
+	private void begin(byte kind) {
+		record.length = 4;
+		record.writeByte(kind);
+	}
+
+	private void end() throws IOException {
+		int length = record.length - 4;
+		record.bytes[0] = (byte) (length >>> 24);
+		record.bytes[1] = (byte) (length >>> 16);
+		record.bytes[2] = (byte) (length >>> 8);
+		record.bytes[3] = (byte) length;
+		out.write(record.bytes, 0, record.length);
+	}
+
+	private static class RecordBuffer {
+		private byte[] bytes = new byte[1024];
+		private int length;
+
+		void writeByte(int value) {
+			if (length == bytes.length) {
+				bytes = Arrays.copyOf(bytes, length * 2);
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		void writeBytes(byte[] values) {
+			for (byte value : values) {
+				writeByte(value);
+			}
+		}
+
+		// Zigzag varint, small numbers of either sign take a single byte
+		void writeInt(int value) {
+			int zigzag = (value << 1) ^ (value >> 31);
+			while ((zigzag & ~0x7f) != 0) {
+				writeByte((zigzag & 0x7f) | 0x80);
+				zigzag >>>= 7;
+			}
+			writeByte(zigzag);
+		}
+
+		void writeLong(long value) {
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				writeByte((int) (value >>> shift));
+			}
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package codes.blitz.game.recording;
+
+/**
+ * Layout of the files written by {@link GameRecorder}.
+ *
+ * A file starts with {@link #MAGIC} and {@link #VERSION}, then holds
+ * records, each an int length followed by that many bytes: a kind byte and
+ * its payload. Numbers are zigzag varints. Strings go through a table
+ * built while reading: reference 0 is `null`, the next unused reference is
+ * followed by the new string, anything else is a string seen before.
+ *
+ * Things that don't change during a game (the tiles, rules, crew names and
+ * prices) are only written when they change, and every tick only writes what
+ * changed for each unit since the previous tick. A unit's path is its number
+ * of steps, -1 for none, then every step as the x and y offsets from the
+ * one before it, starting from the unit's position.
+ */
+final class RecordFormat {
+	static final long MAGIC = 0x424c49545a524543L; // "BLITZREC"
+	static final int VERSION = 2;
+
+	// totalTick, crewId
+	static final byte GAME = 1;
+	// size, size * size tile ordinals, `y * size + x`
+	static final byte MAP = 2;
+	// MAX_MINER_CARGO, MAX_CART_CARGO, MAX_MINER_MOVE_CARGO
+	static final byte RULES = 3;
+	// id, name, homeBase, has prices, [miner, outlaw, cart price]
+	static final byte CREW = 4;
+	// tick, depots (count, [x, y, blitzium]), crews (count, [id, blitzium,
+	// totalBlitzium, errors, units (count, [id, flags, changed fields])])
+	static final byte TICK = 5;
+	// has tick, [tick], actions (count, [kind, BUY: unit type | unit id,
+	// has target, [x, y]])
+	static final byte COMMAND = 6;
+
+	// Unit fields written in a tick, the rest didn't change since the previous one
+	static final int UNIT_TYPE = 1;
+	static final int UNIT_POSITION = 2;
+	static final int UNIT_BLITZIUM = 4;
+	static final int UNIT_PATH = 8;
+
+	// Action kinds, unit actions are `UNIT_ACTION + UnitActionType.ordinal()`
+	static final int BUY_ACTION = 0;
+	static final int UNIT_ACTION = 1;
+
+	private RecordFormat() {
+	}
+}
@@ -0,0 +1,333 @@
+package codes.blitz.game.recording;
+
+import static codes.blitz.game.recording.RecordFormat.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import codes.blitz.game.message.MessageType;
+import codes.blitz.game.message.bot.BotMessage;
+import codes.blitz.game.message.game.Action;
+import codes.blitz.game.message.game.BuyAction;
+import codes.blitz.game.message.game.Crew;
+import codes.blitz.game.message.game.Depot;
+import codes.blitz.game.message.game.GameMap;
+import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.message.game.Position;
+import codes.blitz.game.message.game.Prices;
+import codes.blitz.game.message.game.Rules;
+import codes.blitz.game.message.game.TileGrid;
+import codes.blitz.game.message.game.Unit;
+import codes.blitz.game.message.game.UnitAction;
+import codes.blitz.game.message.game.UnitActionType;
+import codes.blitz.game.message.game.UnitType;
+
+/**
+ * Reads back a log written by {@link GameRecorder}, straight from a memory
+ * mapping of the file. Every {@link #next()} rebuilds the next tick received
+ * or command sent, in the order they were recorded. Every tick shares the same
+ * {@link TileGrid} as long as the tiles don't change.
+ *
+ * A record cut short, like the last one of a bot that crashed, ends the
+ * replay.
+ */
+public class ReplayReader implements Closeable {
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final List<String> strings = new ArrayList<>();
+
+	private TileGrid grid;
+	private int totalTick;
+	private String crewId;
+	private Rules rules;
+	private final Map<String, Crew> crewInfo = new HashMap<>();
+	private Map<String, Unit> previousUnits = new HashMap<>();
+
+	public ReplayReader(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		if (buffer.remaining() < 8 || buffer.getLong() != MAGIC) {
+			throw new IOException(file + " is not a game recording");
+		}
+		int version = readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported recording version " + version);
+		}
+	}
+
+	/**
+	 * Move to the next tick or command. Return `null` at the end of the
+	 * recording.
+	 */
+	public Entry next() throws IOException {
+		while (buffer.remaining() >= 4) {
+			int length = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				return null;
+			}
+			int end = buffer.position() + length;
+			byte kind = buffer.get();
+
+			Entry entry = null;
+			switch (kind) {
+			case GAME:
+				totalTick = readInt();
+				crewId = readString();
+				break;
+			case MAP:
+				readMap();
+				break;
+			case RULES:
+				rules = new Rules();
+				rules.setMaxMinerCargo(readInt());
+				rules.setMaxCartCargo(readInt());
+				rules.setMaxMinerMoveCargo(readInt());
+				break;
+			case CREW:
+				readCrewInfo();
+				break;
+			case TICK:
+				entry = new Entry(readTick(), null);
+				break;
+			case COMMAND:
+				entry = new Entry(null, readCommand());
+				break;
+			default:
+				// Records from a newer recorder are skipped
+			}
+
+			if (buffer.position() != end) {
+				if (entry != null || buffer.position() > end) {
+					throw new IOException("Corrupted record of kind " + kind);
+				}
+				buffer.position(end);
+			}
+			if (entry != null) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void readMap() {
+		int size = readInt();
+		byte[] tiles = new byte[size * size];
+		buffer.get(tiles);
+		grid = new TileGrid(size, tiles);
+	}
+
+	private void readCrewInfo() {
+		Crew crew = new Crew();
+		crew.setId(readString());
+		crew.setName(readString());
+		crew.setHomeBase(readPosition());
+		if (readInt() != 0) {
+			Prices prices = new Prices();
+			prices.setMinerPrice(readInt());
+			prices.setOutlawPrice(readInt());
+			prices.setCartPrice(readInt());
+			crew.setPrices(prices);
+		}
+		crewInfo.put(crew.getId(), crew);
+	}
+
+	private GameMessage readTick() {
+		GameMessage message = new GameMessage();
+		message.setTick(readInt());
+		message.setTotalTick(totalTick);
+		message.setCrewId(crewId);
+		message.setRules(rules);
+
+		GameMap map = new GameMap();
+		map.setTileGrid(grid);
+		Depot[] depots = new Depot[readInt()];
+		for (int i = 0; i < depots.length; i++) {
+			depots[i] = new Depot();
+			depots[i].setPosition(readPosition());
+			depots[i].setBlitzium(readInt());
+		}
+		map.setDepots(depots);
+		message.setGameMap(map);
+
+		Map<String, Unit> units = new HashMap<>();
+		int crewCount = readInt();
+		List<Crew> crews = new ArrayList<>(crewCount);
+		for (int i = 0; i < crewCount; i++) {
+			Crew crew = new Crew();
+			crew.setId(readString());
+			Crew info = crewInfo.get(crew.getId());
+			if (info != null) {
+				crew.setName(info.getName());
+				crew.setHomeBase(info.getHomeBase());
+				crew.setPrices(info.getPrices());
+			}
+			crew.setBlitzium(readInt());
+			crew.setTotalBlitzium(readInt());
+
+			int errorCount = readInt();
+			List<String> errors = new ArrayList<>(errorCount);
+			for (int j = 0; j < errorCount; j++) {
+				errors.add(readString());
+			}
+			crew.setErrors(errors);
+
+			int unitCount = readInt();
+			List<Unit> crewUnits = new ArrayList<>(unitCount);
+			for (int j = 0; j < unitCount; j++) {
+				Unit unit = readUnit();
+				crewUnits.add(unit);
+				units.put(unit.getId(), unit);
+			}
+			crew.setUnits(crewUnits);
+			crews.add(crew);
+		}
+		message.setCrews(crews);
+		previousUnits = units;
+		return message;
+	}
+
+	private Unit readUnit() {
+		Unit unit = new Unit();
+		unit.setId(readString());
+		Unit previous = previousUnits.get(unit.getId());
+		int flags = readInt();
+
+		if ((flags & UNIT_TYPE) != 0) {
+			int type = readInt();
+			unit.setType(type < 0 ? null : UnitType.values()[type]);
+		} else {
+			unit.setType(previous.getType());
+		}
+		unit.setPosition((flags & UNIT_POSITION) != 0 ? readPosition()
+				: previous.getPosition());
+		unit.setBlitzium((flags & UNIT_BLITZIUM) != 0 ? readInt()
+				: previous.getBlitzium());
+		unit.setPath((flags & UNIT_PATH) != 0 ? readPath(unit.getPosition())
+				: previous.getPath());
+		return unit;
+	}
+
+	private List<Position> readPath(Position from) {
+		int length = readInt();
+		if (length < 0) {
+			return null;
+		}
+
+		int x = from == null ? 0 : from.getX();
+		int y = from == null ? 0 : from.getY();
+		List<Position> path = new ArrayList<>(length);
+		for (int i = 0; i < length; i++) {
+			x += readInt();
+			y += readInt();
+			path.add(position(x, y));
+		}
+		return path;
+	}
+
+	private BotMessage readCommand() {
+		BotMessage message = new BotMessage();
+		message.setType(MessageType.COMMAND);
+		if (readInt() != 0) {
+			message.setTick(readInt());
+		}
+
+		int actionCount = readInt();
+		List<Action> actions = new ArrayList<>(actionCount);
+		for (int i = 0; i < actionCount; i++) {
+			int kind = readInt();
+			if (kind == BUY_ACTION) {
+				actions.add(new BuyAction(UnitType.values()[readInt()]));
+			} else {
+				UnitActionType type = UnitActionType.values()[kind - UNIT_ACTION];
+				String unitId = readString();
+				Position target = readInt() != 0 ? readPosition() : null;
+				actions.add(new UnitAction(type, unitId, target));
+			}
+		}
+		message.setActions(actions);
+		return message;
+	}
+
+	// Positions on the map are the grid's own, shared by every tick
+	private Position readPosition() {
+		int x = readInt();
+		int y = readInt();
+		if (x < 0 && y < 0) {
+			return null;
+		}
+		return position(x, y);
+	}
+
+	private Position position(int x, int y) {
+		Position position = grid != null ? grid.positionAt(x, y) : null;
+		return position != null ? position : new Position(x, y);
+	}
+
+	private String readString() {
+		int reference = readInt();
+		if (reference == 0) {
+			return null;
+		}
+		if (reference <= strings.size()) {
+			return strings.get(reference - 1);
+		}
+
+		byte[] bytes = new byte[readInt()];
+		buffer.get(bytes);
+		String string = new String(bytes, StandardCharsets.UTF_8);
+		strings.add(string);
+		return string;
+	}
+
+	private int readInt() {
+		int zigzag = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			zigzag |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	/**
+	 * A tick received from the server or a command sent back to it, only one
+	 * of the two is set.
+	 */
+	public static class Entry {
+		private final GameMessage gameMessage;
+		private final BotMessage botMessage;
+
+		Entry(GameMessage gameMessage, BotMessage botMessage) {
+			this.gameMessage = gameMessage;
+			this.botMessage = botMessage;
+		}
+
+		public boolean isTick() {
+			return gameMessage != null;
+		}
+
+		public GameMessage getGameMessage() {
+			return gameMessage;
+		}
+
+		public BotMessage getBotMessage() {
+			return botMessage;
+		}
+	}
+}
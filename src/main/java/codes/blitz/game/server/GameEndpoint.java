@@ -0,0 +1,29 @@
+package codes.blitz.game.server;
+
+import javax.websocket.OnClose;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+/**
+ * WebSocket side of the local server. The container creates one endpoint per
+ * connection, they all hand their messages to the match being served.
+ */
+@ServerEndpoint("/")
+public class GameEndpoint {
+	private static volatile Match match;
+
+	static void serve(Match match) {
+		GameEndpoint.match = match;
+	}
+
+	@OnMessage
+	public void onMessage(String message, Session session) {
+		match.onMessage(session, message);
+	}
+
+	@OnClose
+	public void onClose(Session session) {
+		match.onClose(session);
+	}
+}
@@ -0,0 +1,65 @@
+package codes.blitz.game.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Round trip of every tick, from the moment the frame was handed to the
+ * socket to the moment the answer came back. That covers both encodings,
+ * the transport and the bot's decision.
+ */
+public class LatencyRecorder {
+	private final List<long[]> samples = new ArrayList<>();
+	private int misses;
+	private int lateAnswers;
+
+	public synchronized void answered(int tick, long roundTripNanos) {
+		samples.add(new long[] { tick, roundTripNanos });
+	}
+
+	public synchronized void missed() {
+		misses++;
+	}
+
+	// An answer that came back after the deadline, for a tick already played
+	public synchronized void late() {
+		lateAnswers++;
+	}
+
+	public synchronized String summary() {
+		long[] sorted = samples.stream().mapToLong(sample -> sample[1]).sorted().toArray();
+		return String.format(
+				"%d ticks answered, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d missed, %d late",
+				sorted.length, millis(percentile(sorted, 0.50)),
+				millis(percentile(sorted, 0.99)),
+				millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]), misses,
+				lateAnswers);
+	}
+
+	public synchronized void writeCsv(Path file) throws IOException {
+		try (PrintWriter out = new PrintWriter(
+				Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			out.println("tick,roundTripNanos");
+			for (long[] sample : samples) {
+				out.println(sample[0] + "," + sample[1]);
+			}
+		}
+	}
+
+	private static long percentile(long[] sorted, double fraction) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(fraction * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+}
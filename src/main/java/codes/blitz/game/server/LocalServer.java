@@ -0,0 +1,68 @@
+package codes.blitz.game.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import javax.websocket.DeploymentException;
+
+import org.glassfish.tyrus.server.Server;
+
+import codes.blitz.game.logging.AsyncLogger;
+
+/**
+ * Stand-in for the game server, to measure the bot end to end on a single
+ * machine. Serves one game on `ws://127.0.0.1:<SERVER_PORT>` and prints the
+ * round trip of every tick when the game is over.
+ *
+ * The game is either a recorded game replayed as is (`REPLAY`, one game
+ * message per line), or simulated from a recorded game message (`SIMULATE`).
+ * Other settings: `SERVER_PORT` (8765), `TURN_DEADLINE_MS` (1000),
+ * `MAX_TICKS` for simulated games and `LATENCY_CSV` to save every sample.
+ */
+public class LocalServer {
+	public static void main(String[] args) throws IOException,
+			DeploymentException, InterruptedException {
+		int port = Integer.parseInt(env("SERVER_PORT", "8765"));
+		long deadlineMillis = Long.parseLong(env("TURN_DEADLINE_MS", "1000"));
+
+		TickSource source;
+		if (System.getenv("REPLAY") != null) {
+			source = new RecordedGame(Path.of(System.getenv("REPLAY")));
+		} else if (System.getenv("SIMULATE") != null) {
+			String firstFrame = Files.readString(Path.of(System.getenv("SIMULATE")),
+					StandardCharsets.UTF_8);
+			int maxTicks = Integer.parseInt(env("MAX_TICKS", String.valueOf(Integer.MAX_VALUE)));
+			source = new SimulatedGame(firstFrame, maxTicks);
+		} else {
+			throw new IllegalArgumentException("Set REPLAY or SIMULATE to the game to serve");
+		}
+
+		AsyncLogger log = AsyncLogger.getInstance();
+		LatencyRecorder recorder = new LatencyRecorder();
+		Match match = new Match(source, deadlineMillis, recorder);
+		GameEndpoint.serve(match);
+
+		Server server = new Server("127.0.0.1", port, "/", Collections.emptyMap(),
+				GameEndpoint.class);
+		server.start();
+		log.info("Serving on ws://127.0.0.1:", port);
+		try {
+			match.awaitEnd();
+		} finally {
+			server.stop();
+		}
+
+		log.info(recorder.summary());
+		if (System.getenv("LATENCY_CSV") != null) {
+			recorder.writeCsv(Path.of(System.getenv("LATENCY_CSV")));
+		}
+	}
+
+	private static String env(String name, String defaultValue) {
+		String value = System.getenv(name);
+		return value != null ? value : defaultValue;
+	}
+}
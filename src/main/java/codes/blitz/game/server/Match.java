@@ -0,0 +1,175 @@
+package codes.blitz.game.server;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.Session;
+
+import com.google.gson.stream.JsonReader;
+
+import codes.blitz.game.logging.AsyncLogger;
+import codes.blitz.game.message.BotMessageReader;
+import codes.blitz.game.message.MessageType;
+import codes.blitz.game.message.bot.BotMessage;
+import codes.blitz.game.message.game.Action;
+
+/**
+ * One game against one bot. Like the real server, the next tick is sent as
+ * soon as the bot answers, or when the turn deadline passes without an
+ * answer, in which case the bot's units do nothing for that tick.
+ *
+ * Everything happens on a single clock thread, so answers and deadlines
+ * never race each other.
+ */
+public class Match {
+	private final TickSource source;
+	private final long deadlineMillis;
+	private final LatencyRecorder recorder;
+	private final CountDownLatch finished = new CountDownLatch(1);
+	private final BotMessageReader reader = new BotMessageReader();
+	private final AsyncLogger log = AsyncLogger.getInstance();
+	private final ScheduledExecutorService clock = Executors
+			.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "local-server-clock");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	private Session session;
+	private boolean started;
+	private int currentTick;
+	private boolean answered;
+	private long sentAtNanos;
+	private ScheduledFuture<?> deadline;
+
+	public Match(TickSource source, long deadlineMillis, LatencyRecorder recorder) {
+		this.source = source;
+		this.deadlineMillis = deadlineMillis;
+		this.recorder = recorder;
+	}
+
+	public void onMessage(Session session, String json) {
+		long receivedAtNanos = System.nanoTime();
+		clock.execute(() -> {
+			BotMessage message;
+			try {
+				message = reader.read(json);
+			} catch (IOException | RuntimeException e) {
+				log.warn("Could not read bot message: ", e);
+				return;
+			}
+
+			if (message.getType() == MessageType.REGISTER) {
+				register(session, message);
+			} else if (message.getType() == MessageType.COMMAND) {
+				command(message, receivedAtNanos);
+			}
+		});
+	}
+
+	public void onClose(Session session) {
+		clock.execute(() -> {
+			if (session == this.session) {
+				finish();
+			}
+		});
+	}
+
+	public void awaitEnd() throws InterruptedException {
+		finished.await();
+	}
+
+	private void register(Session session, BotMessage message) {
+		if (started) {
+			log.warn("Ignoring a second registration from ", message.getCrewName());
+			return;
+		}
+		log.info("Registered ", message.getCrewName() != null
+				? message.getCrewName() : "a bot with a token");
+		this.session = session;
+		started = true;
+		sendNextTick(Collections.emptyList());
+	}
+
+	private void command(BotMessage message, long receivedAtNanos) {
+		if (!started || answered || message.getTick() == null
+				|| message.getTick() != currentTick) {
+			recorder.late();
+			return;
+		}
+
+		answered = true;
+		deadline.cancel(false);
+		recorder.answered(currentTick, receivedAtNanos - sentAtNanos);
+		List<Action> actions = message.getActions();
+		sendNextTick(actions != null ? actions : Collections.emptyList());
+	}
+
+	private void deadlinePassed(int tick) {
+		if (answered || tick != currentTick) {
+			return;
+		}
+		recorder.missed();
+		answered = true;
+		sendNextTick(Collections.emptyList());
+	}
+
+	private void sendNextTick(List<Action> actions) {
+		String frame = source.nextFrame(actions);
+		if (frame == null) {
+			finish();
+			return;
+		}
+
+		try {
+			currentTick = readTick(frame);
+			answered = false;
+			sentAtNanos = System.nanoTime();
+			session.getBasicRemote().sendText(frame);
+		} catch (IOException e) {
+			log.warn("Could not send tick: ", e);
+			finish();
+			return;
+		}
+
+		int tick = currentTick;
+		deadline = clock.schedule(() -> deadlinePassed(tick), deadlineMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private void finish() {
+		if (finished.getCount() == 0) {
+			return;
+		}
+		if (session != null && session.isOpen()) {
+			try {
+				session.close();
+			} catch (IOException e) {
+				log.warn("Could not close the session: ", e);
+			}
+		}
+		finished.countDown();
+		clock.shutdown();
+	}
+
+	// The tick comes first in the game messages, no need to read the rest
+	private static int readTick(String frame) throws IOException {
+		try (JsonReader in = new JsonReader(new StringReader(frame))) {
+			in.beginObject();
+			while (in.hasNext()) {
+				if (in.nextName().equals("tick")) {
+					return in.nextInt();
+				}
+				in.skipValue();
+			}
+		}
+		throw new IOException("Game message without a tick");
+	}
+}
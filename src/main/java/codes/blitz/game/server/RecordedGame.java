@@ -0,0 +1,31 @@
+package codes.blitz.game.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import codes.blitz.game.message.game.Action;
+
+/**
+ * Replays a recorded game, one game message per line, whatever the bot
+ * answers. Frames are sent exactly as they were recorded.
+ */
+public class RecordedGame implements TickSource {
+	private final Iterator<String> frames;
+
+	public RecordedGame(Path file) throws IOException {
+		this.frames = Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+				.filter(line -> !line.isBlank())
+				.collect(Collectors.toList())
+				.iterator();
+	}
+
+	@Override
+	public String nextFrame(List<Action> actions) {
+		return frames.hasNext() ? frames.next() : null;
+	}
+}
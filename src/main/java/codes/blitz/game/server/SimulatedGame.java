@@ -0,0 +1,42 @@
+package codes.blitz.game.server;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import codes.blitz.game.message.GameMessageReader;
+import codes.blitz.game.message.GameMessageWriter;
+import codes.blitz.game.message.game.Action;
+import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.simulation.Simulator;
+
+/**
+ * Plays a game forward with the {@link Simulator}, starting from a recorded
+ * game message. The bot plays the crew the message was sent to, the other
+ * crews don't do anything.
+ */
+public class SimulatedGame implements TickSource {
+	private final Simulator simulator = new Simulator();
+	private final GameMessageWriter writer = new GameMessageWriter();
+	private final int lastTick;
+	private GameMessage state;
+	private boolean started;
+
+	public SimulatedGame(String firstFrame, int maxTicks) throws IOException {
+		this.state = new GameMessageReader(false).read(firstFrame);
+		// In longs: MAX_TICKS defaults to Integer.MAX_VALUE
+		this.lastTick = (int) Math.min(state.getTotalTick() - 1L, (long) state.getTick() + maxTicks - 1);
+	}
+
+	@Override
+	public String nextFrame(List<Action> actions) {
+		if (started) {
+			if (state.getTick() >= lastTick) {
+				return null;
+			}
+			state = simulator.step(state, Map.of(state.getCrewId(), actions));
+		}
+		started = true;
+		return writer.write(state);
+	}
+}
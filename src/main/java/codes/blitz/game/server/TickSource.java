@@ -0,0 +1,18 @@
+package codes.blitz.game.server;
+
+import java.util.List;
+
+import codes.blitz.game.message.game.Action;
+
+/**
+ * Where the local server gets the ticks it sends to the bot.
+ */
+public interface TickSource {
+	/**
+	 * The next tick to send, as the JSON the game server would send, given
+	 * the actions the bot answered to the previous one (empty for the first
+	 * tick and when the bot missed the deadline). Return `null` once the game
+	 * is over.
+	 */
+	String nextFrame(List<Action> actions);
+}
@@ -0,0 +1,442 @@
+package codes.blitz.game.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import codes.blitz.game.message.game.Action;
+import codes.blitz.game.message.game.BuyAction;
+import codes.blitz.game.message.game.Crew;
+import codes.blitz.game.message.game.Depot;
+import codes.blitz.game.message.game.GameMap;
+import codes.blitz.game.message.game.GameMessage;
+import codes.blitz.game.message.game.Position;
+import codes.blitz.game.message.game.Prices;
+import codes.blitz.game.message.game.Rules;
+import codes.blitz.game.message.game.TileGrid;
+import codes.blitz.game.message.game.TileType;
+import codes.blitz.game.message.game.Unit;
+import codes.blitz.game.message.game.UnitAction;
+import codes.blitz.game.message.game.UnitActionType;
+import codes.blitz.game.message.game.UnitType;
+
+/**
+ * Plays the game rules forward in process: given a tick and the actions of
+ * every crew, produces the next tick. Nothing goes through JSON, and the
+ * input message is left untouched.
+ *
+ * Every tick is resolved in this order:
+ * <ol>
+ * <li>MINE: a miner next to a mine gains one blitzium, up to
+ * {@link Rules#getMaxMinerCargo()}.</li>
+ * <li>DROP and PICKUP, in crew then unit order. Dropping on the crew's home
+ * base scores the cargo; dropping on a unit of the same crew or on a depot
+ * fills it up to its capacity; dropping on an empty cell leaves a depot
+ * there. Picking up works the other way around, from a depot or a unit of
+ * the same crew.</li>
+ * <li>MOVE: units take one step along a shortest path towards their target,
+ * if that cell is free. Miners carrying more than
+ * {@link Rules#getMaxMinerMoveCargo()} can't move. Like the server, a moving
+ * unit announces the rest of that path in {@link Unit#getPath()}.</li>
+ * <li>BUY: the unit appears on the crew's home base, for the crew's
+ * {@link Prices}.</li>
+ * </ol>
+ * Transfers and mining need the target to be next to the unit. Anything
+ * that can't be done is reported in the crew's errors instead.
+ *
+ * Keep one simulator per game: it caches, for every move target, the
+ * distance field over the map's static walls.
+ */
+public class Simulator {
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private TileGrid grid;
+	private final Map<Integer, int[]> distancesToTarget = new HashMap<>();
+
+	public GameMessage step(GameMessage state,
+			Map<String, List<Action>> actionsByCrew) {
+		GameMap map = state.getGameMap();
+		TileGrid stateGrid = map.getTileGrid();
+		if (stateGrid != grid) {
+			grid = stateGrid;
+			distancesToTarget.clear();
+		}
+
+		GameMessage next = copy(state);
+		Rules rules = next.getRules();
+		Map<String, Unit> unitsById = new HashMap<>();
+		boolean[] occupied = new boolean[grid.getCellCount()];
+		for (Crew crew : next.getCrews()) {
+			for (Unit unit : crew.getUnits()) {
+				unitsById.put(unit.getId(), unit);
+				occupied[grid.indexOf(unit.getPosition())] = true;
+			}
+		}
+
+		List<Crew> crews = next.getCrews();
+		List<List<UnitAction>> unitActions = new ArrayList<>();
+		List<List<BuyAction>> buyActions = new ArrayList<>();
+		for (Crew crew : crews) {
+			List<UnitAction> crewUnitActions = new ArrayList<>();
+			List<BuyAction> crewBuyActions = new ArrayList<>();
+			List<Action> actions = actionsByCrew.getOrDefault(crew.getId(),
+					Collections.emptyList());
+			for (Action action : actions) {
+				if (action instanceof UnitAction) {
+					UnitAction unitAction = (UnitAction) action;
+					Unit unit = unitsById.get(unitAction.getUnitId());
+					if (unit == null || !crew.getUnits().contains(unit)) {
+						crew.getErrors().add("Unit " + unitAction.getUnitId()
+								+ " does not belong to crew " + crew.getId());
+					} else {
+						crewUnitActions.add(unitAction);
+					}
+				} else if (action instanceof BuyAction) {
+					crewBuyActions.add((BuyAction) action);
+				}
+			}
+			crewUnitActions.sort(Comparator.comparing(UnitAction::getUnitId));
+			unitActions.add(crewUnitActions);
+			buyActions.add(crewBuyActions);
+		}
+
+		for (int i = 0; i < crews.size(); i++) {
+			for (UnitAction action : unitActions.get(i)) {
+				Unit unit = unitsById.get(action.getUnitId());
+				switch (action.getAction()) {
+				case MINE:
+					mine(crews.get(i), unit, action.getTarget(), rules);
+					break;
+				case DROP:
+					drop(crews.get(i), unit, action.getTarget(), next, occupied);
+					break;
+				case PICKUP:
+					pickup(crews.get(i), unit, action.getTarget(), next);
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		for (int i = 0; i < crews.size(); i++) {
+			for (UnitAction action : unitActions.get(i)) {
+				if (action.getAction() == UnitActionType.MOVE) {
+					move(crews.get(i), unitsById.get(action.getUnitId()),
+							action.getTarget(), rules, occupied);
+				}
+			}
+		}
+
+		for (int i = 0; i < crews.size(); i++) {
+			for (BuyAction action : buyActions.get(i)) {
+				buy(crews.get(i), action.getUnitType());
+			}
+		}
+
+		next.setTick(state.getTick() + 1);
+		return next;
+	}
+
+	private void mine(Crew crew, Unit unit, Position target, Rules rules) {
+		if (unit.getType() != UnitType.MINER) {
+			crew.getErrors().add("Unit " + unit.getId() + " can't mine");
+			return;
+		}
+		if (!isNextTo(unit, target) || !grid.hasType(target, TileType.MINE)) {
+			crew.getErrors().add("Unit " + unit.getId()
+					+ " is not next to a mine at " + target);
+			return;
+		}
+		unit.setBlitzium(Math.min(rules.getMaxMinerCargo(), unit.getBlitzium() + 1));
+	}
+
+	private void drop(Crew crew, Unit unit, Position target, GameMessage next,
+			boolean[] occupied) {
+		if (!isNextTo(unit, target)) {
+			crew.getErrors().add("Unit " + unit.getId() + " is not next to " + target);
+			return;
+		}
+		if (unit.getBlitzium() == 0) {
+			return;
+		}
+
+		if (target.equals(crew.getHomeBase())) {
+			crew.setBlitzium(crew.getBlitzium() + unit.getBlitzium());
+			crew.setTotalBlitzium(crew.getTotalBlitzium() + unit.getBlitzium());
+			unit.setBlitzium(0);
+			return;
+		}
+
+		Unit receiver = unitAt(crew, target);
+		if (receiver != null) {
+			int amount = Math.min(unit.getBlitzium(),
+					capacityOf(receiver, next.getRules()) - receiver.getBlitzium());
+			receiver.setBlitzium(receiver.getBlitzium() + amount);
+			unit.setBlitzium(unit.getBlitzium() - amount);
+			return;
+		}
+
+		int cell = grid.indexOf(target);
+		if (occupied[cell] || !grid.hasType(cell, TileType.EMPTY)) {
+			crew.getErrors().add("Unit " + unit.getId() + " can't drop on " + target);
+			return;
+		}
+
+		Depot depot = depotAt(next.getGameMap(), target);
+		if (depot == null) {
+			depot = new Depot();
+			depot.setPosition(grid.positionAt(cell));
+			Depot[] depots = next.getGameMap().getDepots();
+			depots = depots == null ? new Depot[1]
+					: Arrays.copyOf(depots, depots.length + 1);
+			depots[depots.length - 1] = depot;
+			next.getGameMap().setDepots(depots);
+		}
+		depot.setBlitzium(depot.getBlitzium() + unit.getBlitzium());
+		unit.setBlitzium(0);
+	}
+
+	private void pickup(Crew crew, Unit unit, Position target, GameMessage next) {
+		if (!isNextTo(unit, target)) {
+			crew.getErrors().add("Unit " + unit.getId() + " is not next to " + target);
+			return;
+		}
+
+		int room = capacityOf(unit, next.getRules()) - unit.getBlitzium();
+		Depot depot = depotAt(next.getGameMap(), target);
+		if (depot != null) {
+			int amount = Math.min(room, depot.getBlitzium());
+			depot.setBlitzium(depot.getBlitzium() - amount);
+			unit.setBlitzium(unit.getBlitzium() + amount);
+			if (depot.getBlitzium() == 0) {
+				next.getGameMap().setDepots(Arrays.stream(next.getGameMap().getDepots())
+						.filter(d -> d != depot)
+						.toArray(Depot[]::new));
+			}
+			return;
+		}
+
+		Unit giver = unitAt(crew, target);
+		if (giver == null) {
+			crew.getErrors().add("Unit " + unit.getId() + " has nothing to pick up at " + target);
+			return;
+		}
+		int amount = Math.min(room, giver.getBlitzium());
+		giver.setBlitzium(giver.getBlitzium() - amount);
+		unit.setBlitzium(unit.getBlitzium() + amount);
+	}
+
+	private void move(Crew crew, Unit unit, Position target, Rules rules,
+			boolean[] occupied) {
+		if (unit.getType() == UnitType.MINER
+				&& unit.getBlitzium() > rules.getMaxMinerMoveCargo()) {
+			crew.getErrors().add("Unit " + unit.getId() + " carries too much to move");
+			return;
+		}
+
+		int targetCell = grid.indexOf(target);
+		if (targetCell < 0) {
+			crew.getErrors().add("Unit " + unit.getId() + " can't move out of the map to " + target);
+			return;
+		}
+
+		int cell = grid.indexOf(unit.getPosition());
+		if (cell == targetCell) {
+			return;
+		}
+
+		int[] distances = distancesToTarget.computeIfAbsent(targetCell, this::staticDistancesTo);
+		unit.setPath(remainingPath(cell, targetCell, distances));
+		int best = -1;
+		for (int i = grid.adjacencyStart(cell); i < grid.adjacencyEnd(cell); i++) {
+			int neighbor = grid.adjacentCell(i);
+			boolean walkable = grid.hasType(neighbor, TileType.EMPTY) && !occupied[neighbor];
+			if (walkable && distances[neighbor] < distances[cell]
+					&& (best < 0 || distances[neighbor] < distances[best])) {
+				best = neighbor;
+			}
+		}
+		if (best < 0) {
+			return;
+		}
+
+		occupied[cell] = false;
+		occupied[best] = true;
+		unit.setPosition(grid.positionAt(best));
+		unit.setPath(remainingPath(best, targetCell, distances));
+	}
+
+	// The cells after `cell` on a shortest path to the target, ignoring units, up to next to it if it's not empty
+	private List<Position> remainingPath(int cell, int targetCell,
+			int[] distances) {
+		if (distances[cell] == UNREACHABLE) {
+			return Collections.emptyList();
+		}
+
+		List<Position> path = new ArrayList<>(distances[cell]);
+		while (cell != targetCell) {
+			int next = -1;
+			for (int i = grid.adjacencyStart(cell); i < grid.adjacencyEnd(cell); i++) {
+				int neighbor = grid.adjacentCell(i);
+				if (distances[neighbor] == distances[cell] - 1) {
+					next = neighbor;
+					break;
+				}
+			}
+			if (next == targetCell && !grid.hasType(targetCell, TileType.EMPTY)) {
+				break;
+			}
+			path.add(grid.positionAt(next));
+			cell = next;
+		}
+		return path;
+	}
+
+	private void buy(Crew crew, UnitType type) {
+		Prices prices = crew.getPrices();
+		int price;
+		switch (type) {
+		case MINER:
+			price = prices.getMinerPrice();
+			break;
+		case CART:
+			price = prices.getCartPrice();
+			break;
+		default:
+			price = prices.getOutlawPrice();
+		}
+		if (crew.getBlitzium() < price) {
+			crew.getErrors().add("Crew " + crew.getId() + " can't afford a " + type);
+			return;
+		}
+
+		crew.setBlitzium(crew.getBlitzium() - price);
+		Unit unit = new Unit();
+		unit.setId(nextUnitId(crew));
+		unit.setType(type);
+		unit.setPosition(crew.getHomeBase());
+		unit.setPath(Collections.emptyList());
+		crew.getUnits().add(unit);
+	}
+
+	private static String nextUnitId(Crew crew) {
+		int suffix = crew.getUnits().size();
+		while (true) {
+			String id = crew.getId() + "-" + suffix;
+			if (crew.getUnits().stream().noneMatch(u -> u.getId().equals(id))) {
+				return id;
+			}
+			suffix++;
+		}
+	}
+
+	// BFS from the target over the cells units can ever walk on, ignoring units
+	private int[] staticDistancesTo(int targetCell) {
+		int[] distances = new int[grid.getCellCount()];
+		Arrays.fill(distances, UNREACHABLE);
+		int[] queue = new int[grid.getCellCount()];
+		int head = 0;
+		int tail = 0;
+		distances[targetCell] = 0;
+		queue[tail++] = targetCell;
+		while (head < tail) {
+			int cell = queue[head++];
+			for (int i = grid.adjacencyStart(cell); i < grid.adjacencyEnd(cell); i++) {
+				int neighbor = grid.adjacentCell(i);
+				if (distances[neighbor] == UNREACHABLE
+						&& grid.hasType(neighbor, TileType.EMPTY)) {
+					distances[neighbor] = distances[cell] + 1;
+					queue[tail++] = neighbor;
+				}
+			}
+		}
+		return distances;
+	}
+
+	private boolean isNextTo(Unit unit, Position target) {
+		int cell = grid.indexOf(unit.getPosition());
+		int targetCell = target == null ? -1 : grid.indexOf(target);
+		return cell >= 0 && targetCell >= 0 && grid.isAdjacent(cell, targetCell);
+	}
+
+	private static Unit unitAt(Crew crew, Position position) {
+		for (Unit unit : crew.getUnits()) {
+			if (unit.getPosition().equals(position)) {
+				return unit;
+			}
+		}
+		return null;
+	}
+
+	private static Depot depotAt(GameMap map, Position position) {
+		if (map.getDepots() == null) {
+			return null;
+		}
+		for (Depot depot : map.getDepots()) {
+			if (depot.getPosition().equals(position)) {
+				return depot;
+			}
+		}
+		return null;
+	}
+
+	private static int capacityOf(Unit unit, Rules rules) {
+		return unit.getType() == UnitType.CART ? rules.getMaxCartCargo()
+				: rules.getMaxMinerCargo();
+	}
+
+	// Everything the simulation changes is copied, the tiles and rules are shared
+	private static GameMessage copy(GameMessage state) {
+		GameMessage next = new GameMessage();
+		next.setTick(state.getTick());
+		next.setTotalTick(state.getTotalTick());
+		next.setCrewId(state.getCrewId());
+		next.setRules(state.getRules());
+
+		GameMap map = new GameMap();
+		map.setTileGrid(state.getGameMap().getTileGrid());
+		Depot[] depots = state.getGameMap().getDepots();
+		if (depots != null) {
+			Depot[] depotCopies = new Depot[depots.length];
+			for (int i = 0; i < depots.length; i++) {
+				depotCopies[i] = new Depot();
+				depotCopies[i].setPosition(depots[i].getPosition());
+				depotCopies[i].setBlitzium(depots[i].getBlitzium());
+			}
+			map.setDepots(depotCopies);
+		}
+		next.setGameMap(map);
+
+		List<Crew> crews = new ArrayList<>(state.getCrews().size());
+		for (Crew crew : state.getCrews()) {
+			Crew crewCopy = new Crew();
+			crewCopy.setId(crew.getId());
+			crewCopy.setName(crew.getName());
+			crewCopy.setHomeBase(crew.getHomeBase());
+			crewCopy.setBlitzium(crew.getBlitzium());
+			crewCopy.setTotalBlitzium(crew.getTotalBlitzium());
+			crewCopy.setPrices(crew.getPrices());
+			crewCopy.setErrors(new ArrayList<>());
+
+			List<Unit> units = new ArrayList<>(crew.getUnits().size());
+			for (Unit unit : crew.getUnits()) {
+				Unit unitCopy = new Unit();
+				unitCopy.setId(unit.getId());
+				unitCopy.setType(unit.getType());
+				unitCopy.setBlitzium(unit.getBlitzium());
+				unitCopy.setPosition(unit.getPosition());
+				unitCopy.setPath(Collections.emptyList());
+				units.add(unitCopy);
+			}
+			crewCopy.setUnits(units);
+			crews.add(crewCopy);
+		}
+		next.setCrews(crews);
+		return next;
+	}
+}